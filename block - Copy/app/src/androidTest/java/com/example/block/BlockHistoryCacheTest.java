@@ -0,0 +1,155 @@
+package com.example.block;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * Repeated searches of a block are served from the history cache, and an insert or delete drops the
+ * pages of that block only. Also times a repeated search against a cold one, logged under TAG.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BlockHistoryCacheTest {
+
+    private static final String TAG = "BlockHistoryCacheTest";
+    private static final String DB_NAME = "block-history-test.db";
+    private static final long START = 1_600_000_000_000L;
+    private static final int PAGE = 50;
+
+    private Context context;
+    private DatabaseHelper dbHelper;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        dbHelper = new DatabaseHelper(context, DB_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void repeatedSearchIsServedFromMemory() {
+        insert("355/07", 10_000, 0);
+        insert("355/07", 20_000, 1);
+
+        List<Reading> first = firstPage("355/07");
+        assertEquals(0, dbHelper.getHistoryCacheHits());
+        assertEquals(1, dbHelper.getHistoryCacheMisses());
+
+        assertSame(first, firstPage("355/07"));
+        assertSame(first, firstPage("355/07"));
+        assertEquals(2, dbHelper.getHistoryCacheHits());
+        assertEquals(1, dbHelper.getHistoryCacheMisses());
+    }
+
+    @Test
+    public void writesDropOnlyTheirBlock() {
+        insert("355/07", 10_000, 0);
+        long other = insert("355/08", 10_000, 0);
+        List<Reading> seven = firstPage("355/07");
+        List<Reading> eight = firstPage("355/08");
+
+        insert("355/07", 30_000, 1);
+        List<Reading> sevenAfterInsert = firstPage("355/07");
+        assertNotSame(seven, sevenAfterInsert);
+        assertEquals(2, sevenAfterInsert.size());
+        // The new reading's used energy is already on the cached page
+        assertEquals(20_000, sevenAfterInsert.get(0).usedCount);
+        assertSame(eight, firstPage("355/08"));
+
+        assertTrue(dbHelper.deleteRow(other));
+        assertTrue(firstPage("355/08").isEmpty());
+        assertSame(sevenAfterInsert, firstPage("355/07"));
+
+        // Deleting an unknown reading changes nothing
+        assertFalse(dbHelper.deleteRow(other));
+        assertSame(sevenAfterInsert, firstPage("355/07"));
+    }
+
+    @Test
+    public void groupCommitDropsTheBlocksItWrote() {
+        insert("355/07", 10_000, 0);
+        long eight = insert("355/08", 10_000, 0);
+        List<Reading> seven = firstPage("355/07");
+        firstPage("355/08");
+        List<Reading> nine = firstPage("355/09");
+
+        DatabaseHelper.Write insert = new DatabaseHelper.Write();
+        insert.reading = newReading("355/07", 25_000, 1);
+        DatabaseHelper.Write delete = new DatabaseHelper.Write();
+        delete.deleteId = eight;
+        dbHelper.applyWrites(new DatabaseHelper.Write[]{insert, delete}, 2);
+
+        assertNotSame(seven, firstPage("355/07"));
+        assertEquals(2, firstPage("355/07").size());
+        assertTrue(firstPage("355/08").isEmpty());
+        assertSame(nine, firstPage("355/09"));
+    }
+
+    @Test
+    public void holdsTheMostRecentlySearchedBlocks() {
+        for (int block = 1; block <= BlockHistoryCache.MAX_BLOCKS + 1; block++) {
+            firstPage(Blocks.houseNumber(block));
+        }
+        long misses = dbHelper.getHistoryCacheMisses();
+        // Block 1 was the least recently searched one and made room for the last
+        firstPage(Blocks.houseNumber(2));
+        firstPage(Blocks.houseNumber(1));
+        assertEquals(misses + 1, dbHelper.getHistoryCacheMisses());
+    }
+
+    @Test
+    public void repeatedSearchLatency() {
+        for (int i = 0; i < 2000; i++) {
+            insert("355/07", 10_000L * (i + 1), i);
+        }
+        long start = System.nanoTime();
+        List<Reading> cold = firstPage("355/07");
+        long coldNanos = System.nanoTime() - start;
+        start = System.nanoTime();
+        List<Reading> warm = firstPage("355/07");
+        long warmNanos = System.nanoTime() - start;
+
+        assertSame(cold, warm);
+        Log.i(TAG, String.format(Locale.US, "first page of 2000 readings: cold %.2fms, cached %.3fms",
+                coldNanos / 1e6, warmNanos / 1e6));
+    }
+
+    private List<Reading> firstPage(String houseNumber) {
+        return dbHelper.getReadingsPage(houseNumber, Long.MAX_VALUE, Long.MAX_VALUE, PAGE);
+    }
+
+    private long insert(String houseNumber, long energy, int minute) {
+        dbHelper.insertData(houseNumber, energy, 1500, 0, 25_000, "2020-09-13", "12:00:00", START + minute * 60_000L);
+        return dbHelper.getMaxId();
+    }
+
+    private static DatabaseHelper.NewReading newReading(String houseNumber, long energy, int minute) {
+        DatabaseHelper.NewReading r = new DatabaseHelper.NewReading();
+        r.houseNumber = houseNumber;
+        r.energyCount = energy;
+        r.vat = 1500;
+        r.tarif = 25_000;
+        r.date = "2020-09-13";
+        r.time = "12:00:00";
+        r.readAt = START + minute * 60_000L;
+        return r;
+    }
+}
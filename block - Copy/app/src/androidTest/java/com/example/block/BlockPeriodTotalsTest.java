@@ -0,0 +1,163 @@
+package com.example.block;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * block_period_totals stays equal to the sums over the data table through inserts, re-bills,
+ * deletes and a rebuild. The "month" date filter reads the same billing period.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BlockPeriodTotalsTest {
+
+    private static final String DB_NAME = "block-totals-test.db";
+    private static final long START = 1_600_000_000_000L;
+    private static final long DAY = 86_400_000L;
+
+    private Context context;
+    private DatabaseHelper dbHelper;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        dbHelper = new DatabaseHelper(context, DB_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void followsInsertsAndDeletes() {
+        // Three blocks, a reading every ten days for a year
+        for (int day = 0; day < 365; day += 10) {
+            for (int block = 1; block <= 3; block++) {
+                dbHelper.insertData(Blocks.houseNumber(block), day * 1000L * block, 1500, 5000, 25_000,
+                        "2020-09-13", "12:00:00", START + day * DAY);
+            }
+        }
+        // A late reading re-bills its successor; deleting re-bills the next one again
+        dbHelper.insertData("355/02", 50_000, 1500, 5000, 25_000, "2020-09-13", "12:00:00", START + 25 * DAY);
+        dbHelper.deleteRow(firstId("355/01"));
+        dbHelper.deleteRow(firstId("355/03") + 3);
+        assertMatchesData();
+
+        int period = DatabaseHelper.ethiopianPeriod(START);
+        List<BlockTotal> totals = dbHelper.getBlockTotals(period);
+        assertEquals(3, totals.size());
+        assertEquals("355/01", totals.get(0).houseNumber);
+
+        int year = period / 100;
+        long readings = 0;
+        for (BlockTotal total : dbHelper.getYearTotals(year)) {
+            readings += total.readings;
+        }
+        assertEquals(count("WHERE eth_period BETWEEN " + (year * 100 + 1) + " AND " + (year * 100 + 13)), readings);
+        assertFalse(dbHelper.getBlockHistory("355/02", year * 100 + 1, year * 100 + 13).isEmpty());
+    }
+
+    @Test
+    public void yearTotalsIncludeUnpaddedBlockNumbers() {
+        dbHelper.insertData("355/07", 10_000, 1500, 5000, 25_000, "2020-09-13", "12:00:00", START);
+        dbHelper.insertData("355/7", 30_000, 1500, 5000, 25_000, "2020-09-13", "12:00:00", START + DAY);
+
+        int year = DatabaseHelper.ethiopianPeriod(START) / 100;
+        List<BlockTotal> totals = dbHelper.getYearTotals(year);
+        assertEquals(1, totals.size());
+        assertEquals("355/07", totals.get(0).houseNumber);
+        assertEquals(2, totals.get(0).readings);
+        assertEquals(30_000, totals.get(0).usedCount);
+
+        // And the same as the month's report; both readings fall in Meskerem
+        List<BlockTotal> month = dbHelper.getBlockTotals(DatabaseHelper.ethiopianPeriod(START));
+        assertEquals(1, month.size());
+        long monthReadings = month.get(0).readings;
+        assertEquals(2, monthReadings);
+    }
+
+    @Test
+    public void rebuildRepairsTheTable() {
+        for (int i = 0; i < 100; i++) {
+            dbHelper.insertData(Blocks.houseNumber(i % 66 + 1), i * 1000L, 1500, 5000, 25_000,
+                    "2020-09-13", "12:00:00", START + i * DAY);
+        }
+        dbHelper.getWritableDatabase().execSQL("DELETE FROM " + BlockPeriodTotals.TABLE);
+        dbHelper.rebuildBlockTotals();
+        assertMatchesData();
+    }
+
+    @Test
+    public void monthFilterIsTheCurrentBillingPeriod() {
+        // A reading a day for the last 60 days, so the month before this one has readings too
+        long now = System.currentTimeMillis();
+        for (int day = 0; day < 60; day++) {
+            dbHelper.insertData("355/07", day * 1000L, 1500, 5000, 25_000, "2020-09-13", "12:00:00",
+                    now - (59 - day) * DAY);
+        }
+        int period = DatabaseHelper.currentEthiopianPeriod();
+
+        Cursor c = dbHelper.getRecordsByDateFilter("month");
+        int periodColumn = c.getColumnIndexOrThrow(DatabaseHelper.COLUMN_ETH_PERIOD);
+        int rows = 0;
+        while (c.moveToNext()) {
+            assertEquals(period, c.getInt(periodColumn));
+            rows++;
+        }
+        c.close();
+        assertEquals(count("WHERE eth_period = " + period), rows);
+    }
+
+    private void assertMatchesData() {
+        assertEquals(rows("SELECT house_number, eth_period, COUNT(*), SUM(used_count), SUM(base_charge), " +
+                        "SUM(vat_amount), SUM(additional_payment), SUM(final_payment) FROM data " +
+                        "GROUP BY house_number, eth_period ORDER BY house_number, eth_period"),
+                rows("SELECT * FROM " + BlockPeriodTotals.TABLE + " ORDER BY house_number, eth_period"));
+    }
+
+    private List<String> rows(String sql) {
+        List<String> rows = new ArrayList<>();
+        Cursor c = dbHelper.getReadableDatabase().rawQuery(sql, null);
+        while (c.moveToNext()) {
+            StringBuilder row = new StringBuilder();
+            for (int i = 0; i < c.getColumnCount(); i++) {
+                row.append(c.getString(i)).append('|');
+            }
+            rows.add(row.toString());
+        }
+        c.close();
+        return rows;
+    }
+
+    private long firstId(String block) {
+        Cursor c = dbHelper.getReadableDatabase().rawQuery(
+                "SELECT MIN(_id) FROM data WHERE house_number = ?", new String[]{block});
+        c.moveToFirst();
+        long id = c.getLong(0);
+        c.close();
+        return id;
+    }
+
+    private long count(String where) {
+        Cursor c = dbHelper.getReadableDatabase().rawQuery("SELECT COUNT(*) FROM data " + where, null);
+        c.moveToFirst();
+        long count = c.getLong(0);
+        c.close();
+        return count;
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.block;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CancellationException;
+
+import static org.junit.Assert.*;
+
+/**
+ * CSV/TSV export: UTF-8 with a byte order mark and Amharic headers, one line per reading, no file
+ * left behind on cancel. Export throughput in rows per second is written to logcat under TAG.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CsvExporterTest {
+
+    private static final String TAG = "CsvExporterTest";
+    private static final String DB_NAME = "csv-exporter-test.db";
+
+    private Context context;
+    private DatabaseHelper dbHelper;
+    private File exportDir;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        dbHelper = new DatabaseHelper(context, DB_NAME);
+        exportDir = new File(context.getCacheDir(), "csv-exporter-test");
+        deleteExports();
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+        context.deleteDatabase(DB_NAME);
+        deleteExports();
+    }
+
+    @Test
+    public void writesHeaderAndEveryRow() throws Exception {
+        insertReadings(3);
+
+        List<File> files = export(new CsvExporter(exportDir, "small", CsvExporter.COMMA));
+        assertEquals(1, files.size());
+        assertTrue(files.get(0).getName().endsWith(".csv"));
+
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                new FileInputStream(files.get(0)), StandardCharsets.UTF_8))) {
+            String header = in.readLine();
+            assertEquals('\uFEFF', header.charAt(0));
+            assertEquals(String.join(",", CsvExporter.HEADERS), header.substring(1));
+            // Newest first; 10 kWh used at 2.5 Birr/kWh + 15 % VAT + 50 Birr
+            assertEquals("355/03,10,10,2.5,15,3.75,50.00,78.75,2020-09-13,12:00:00", in.readLine());
+            assertNotNull(in.readLine());
+            assertNotNull(in.readLine());
+            assertNull(in.readLine());
+        }
+    }
+
+    @Test
+    public void tabSeparatedUsesTsvExtension() throws Exception {
+        insertReadings(1);
+        List<File> files = export(new CsvExporter(exportDir, "tabs", CsvExporter.TAB));
+        assertTrue(files.get(0).getName().endsWith(".tsv"));
+    }
+
+    @Test
+    public void cancelledExportLeavesNoFile() throws Exception {
+        insertReadings(CsvExporter.PROGRESS_EVERY_ROWS * 2);
+
+        CsvExporter exporter = new CsvExporter(exportDir, "cancelled", CsvExporter.COMMA);
+        Cursor c = dbHelper.getRecords(null, Long.MIN_VALUE, Long.MAX_VALUE);
+        try {
+            exporter.export(c, (written, total, pages) -> exporter.cancel());
+            fail("Export was not cancelled");
+        } catch (CancellationException expected) {
+            // expected
+        } finally {
+            c.close();
+        }
+
+        String[] left = exportDir.list();
+        assertTrue(left == null || left.length == 0);
+    }
+
+    @Test
+    public void throughput() throws Exception {
+        int rows = 50_000;
+        insertReadings(rows);
+
+        long start = System.nanoTime();
+        List<File> files = export(new CsvExporter(exportDir, "throughput", CsvExporter.COMMA));
+        long micros = (System.nanoTime() - start) / 1000;
+        Log.i(TAG, String.format(Locale.US, "exported %d rows in %d ms (%.0f rows/s, %d KiB)",
+                rows, micros / 1000, rows * 1e6 / Math.max(1, micros), files.get(0).length() / 1024));
+    }
+
+    private List<File> export(CsvExporter exporter) throws Exception {
+        Cursor c = dbHelper.getRecords(null, Long.MIN_VALUE, Long.MAX_VALUE);
+        try {
+            return exporter.export(c, null);
+        } finally {
+            c.close();
+        }
+    }
+
+    // Each block's meter advances 10 kWh per reading
+    private void insertReadings(int count) {
+        long start = 1_600_000_000_000L;
+        DatabaseHelper.NewReading[] batch = new DatabaseHelper.NewReading[count];
+        for (int i = 0; i < count; i++) {
+            DatabaseHelper.NewReading r = new DatabaseHelper.NewReading();
+            r.houseNumber = Blocks.houseNumber(i % Blocks.LAST + 1);
+            r.energyCount = (i / Blocks.LAST + 1) * 10_000L;
+            r.vat = 1500;
+            r.additionalPayment = 5000;
+            r.tarif = 25_000;
+            r.date = "2020-09-13";
+            r.time = "12:00:00";
+            r.readAt = start + i * 60_000L;
+            batch[i] = r;
+        }
+        dbHelper.insertReadings(batch, count);
+    }
+
+    private void deleteExports() {
+        File[] files = exportDir.listFiles();
+        if (files != null) {
+            for (File f : files) f.delete();
+        }
+    }
+}
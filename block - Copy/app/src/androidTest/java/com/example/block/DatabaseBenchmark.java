@@ -0,0 +1,233 @@
+package com.example.block;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.os.Build;
+import android.os.Bundle;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * DatabaseHelper's main paths timed on a SyntheticReadings database of 10k, 100k and 1M readings.
+ * Each size writes database-benchmark-&lt;rows&gt;.json to the app's external files directory
+ * (adb pull /sdcard/Android/data/com.example.block/files/benchmark/) with p50/p95/max in
+ * microseconds per operation, and logs a summary under TAG. The 1M run takes several minutes and
+ * only runs with {@code -e benchmarkLarge true}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DatabaseBenchmark {
+
+    private static final String TAG = "DatabaseBenchmark";
+    private static final String DB_NAME = "database-benchmark.db";
+    private static final int SAMPLES = 200;
+
+    private Context context;
+    private File exportDir;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        exportDir = new File(context.getCacheDir(), "database-benchmark");
+    }
+
+    @After
+    public void tearDown() {
+        context.deleteDatabase(DB_NAME);
+        deleteExports();
+    }
+
+    @Test
+    public void tenThousandReadings() throws Exception {
+        run(10_000);
+    }
+
+    @Test
+    public void oneHundredThousandReadings() throws Exception {
+        run(100_000);
+    }
+
+    @Test
+    public void oneMillionReadings() throws Exception {
+        Bundle args = InstrumentationRegistry.getArguments();
+        assumeTrue(Boolean.parseBoolean(args.getString("benchmarkLarge")));
+        run(1_000_000);
+    }
+
+    private void run(int rows) throws Exception {
+        JSONObject result = new JSONObject();
+        result.put("rows", rows);
+        result.put("device", Build.MANUFACTURER + " " + Build.MODEL);
+        result.put("sdk", Build.VERSION.SDK_INT);
+        result.put("seed", SyntheticReadings.SEED);
+        JSONObject paths = new JSONObject();
+        result.put("paths", paths);
+
+        // Readings end at the start of today, so the date filters select the same rows on every run
+        long now = System.currentTimeMillis();
+        long end = now - now % 86_400_000L;
+
+        DatabaseHelper dbHelper = new DatabaseHelper(context, DB_NAME);
+        long start = System.nanoTime();
+        new SyntheticReadings().fill(dbHelper, rows, end);
+        result.put("generateMillis", (System.nanoTime() - start) / 1_000_000);
+
+        // Fresh helper, so the first reads see a cold latest-reading cache like after app start
+        dbHelper.close();
+        dbHelper = new DatabaseHelper(context, DB_NAME);
+        try {
+            Random random = new Random(SyntheticReadings.SEED);
+
+            long[] nanos = new long[Blocks.LAST];
+            for (int i = 0; i < nanos.length; i++) {
+                String block = Blocks.houseNumber(i + 1);
+                long t = System.nanoTime();
+                dbHelper.getRecentCount(block);
+                nanos[i] = System.nanoTime() - t;
+            }
+            paths.put("getRecentCount.cold", stats(nanos, 1));
+
+            nanos = new long[SAMPLES];
+            for (int i = 0; i < SAMPLES; i++) {
+                String block = Blocks.houseNumber(random.nextInt(Blocks.LAST) + 1);
+                long t = System.nanoTime();
+                dbHelper.getRecentCount(block);
+                nanos[i] = System.nanoTime() - t;
+            }
+            paths.put("getRecentCount", stats(nanos, 1));
+
+            nanos = new long[Blocks.LAST];
+            long rowsRead = 0;
+            for (int i = 0; i < nanos.length; i++) {
+                long t = System.nanoTime();
+                Cursor c = dbHelper.getRecordsByBlock(Blocks.houseNumber(i + 1));
+                rowsRead += drain(c);
+                nanos[i] = System.nanoTime() - t;
+            }
+            paths.put("getRecordsByBlock", stats(nanos, rowsRead / nanos.length));
+
+            JSONObject filters = new JSONObject();
+            for (String filter : Arrays.asList("day", "week", "month", "year")) {
+                long[] filterNanos = new long[5];
+                long filterRows = 0;
+                for (int i = 0; i < filterNanos.length; i++) {
+                    long t = System.nanoTime();
+                    filterRows = drain(dbHelper.getRecordsByDateFilter(filter));
+                    filterNanos[i] = System.nanoTime() - t;
+                }
+                filters.put(filter, stats(filterNanos, filterRows));
+            }
+            paths.put("getRecordsByDateFilter", filters);
+
+            // Look-ups at random points in the history of random blocks
+            List<Reading> sample = dbHelper.getReadings(null, end - 365 * 86_400_000L, end);
+            nanos = new long[SAMPLES];
+            for (int i = 0; i < SAMPLES && !sample.isEmpty(); i++) {
+                Reading r = sample.get(random.nextInt(sample.size()));
+                long t = System.nanoTime();
+                dbHelper.getPreviousEnergy(r.houseNumber, r.date, r.time);
+                nanos[i] = System.nanoTime() - t;
+            }
+            paths.put("getPreviousEnergy", stats(nanos, 1));
+
+            nanos = new long[SAMPLES];
+            for (int i = 0; i < SAMPLES; i++) {
+                String block = Blocks.houseNumber(i % Blocks.LAST + 1);
+                long energy = dbHelper.getRecentCount(block) + 10_000L;
+                long t = System.nanoTime();
+                dbHelper.insertData(block, energy, 1500, 5000, 25_000, "2099-01-01", "00:00:00",
+                        end + i * 60_000L);
+                nanos[i] = System.nanoTime() - t;
+            }
+            paths.put("insertData", stats(nanos, 1));
+
+            long[] pages = new long[1];
+            Cursor c = dbHelper.getAllData();
+            start = System.nanoTime();
+            List<File> files;
+            try {
+                files = new PdfExporter(exportDir, "benchmark")
+                        .export(c, (written, total, pagesWritten) -> pages[0] = pagesWritten);
+            } finally {
+                c.close();
+            }
+            JSONObject export = new JSONObject();
+            export.put("millis", (System.nanoTime() - start) / 1_000_000);
+            export.put("pages", pages[0]);
+            export.put("files", files.size());
+            paths.put("exportPdf", export);
+        } finally {
+            dbHelper.close();
+        }
+
+        File out = write(rows, result);
+        Log.i(TAG, rows + " rows -> " + out + ": " + result.toString());
+        assertTrue(out.length() > 0);
+    }
+
+    private static long drain(Cursor c) {
+        long count = 0;
+        try {
+            while (c.moveToNext()) {
+                c.getLong(0);
+                count++;
+            }
+        } finally {
+            c.close();
+        }
+        return count;
+    }
+
+    // p50 / p95 / max in microseconds; `rows` is the rows each operation returned
+    private static JSONObject stats(long[] nanos, long rows) throws JSONException {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        JSONObject stats = new JSONObject();
+        stats.put("samples", sorted.length);
+        stats.put("rows", rows);
+        stats.put("p50Micros", sorted[sorted.length / 2] / 1000);
+        stats.put("p95Micros", sorted[sorted.length * 95 / 100] / 1000);
+        stats.put("maxMicros", sorted[sorted.length - 1] / 1000);
+        return stats;
+    }
+
+    private File write(int rows, JSONObject result) throws IOException, JSONException {
+        File base = context.getExternalFilesDir(null);
+        File dir = new File(base != null ? base : context.getFilesDir(), "benchmark");
+        if (!dir.exists()) dir.mkdirs();
+        File file = new File(dir, String.format(Locale.US, "database-benchmark-%d.json", rows));
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(result.toString(2).getBytes(StandardCharsets.UTF_8));
+        }
+        return file;
+    }
+
+    private void deleteExports() {
+        File[] files = exportDir.listFiles();
+        if (files != null) {
+            for (File f : files) f.delete();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.block;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Insert and read latency with the old connection handling (rollback journal, database closed after
+ * every insert) against the shared WAL connection. Results are written to logcat under TAG.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DatabaseConnectionBenchmark {
+
+    private static final String TAG = "DbConnectionBenchmark";
+    private static final String DB_NAME = "connection-benchmark.db";
+    private static final int OPERATIONS = 500;
+
+    private Context context;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void insertAndReadLatencyBeforeAndAfter() {
+        String before = measure(false);
+        context.deleteDatabase(DB_NAME);
+        String after = measure(true);
+
+        Log.i(TAG, "before (rollback journal, reopen per insert): " + before);
+        Log.i(TAG, "after (WAL, persistent connection): " + after);
+    }
+
+    @Test
+    public void readsDoNotWaitForAnOpenWriteTransaction() throws Exception {
+        DatabaseHelper dbHelper = new DatabaseHelper(context, DB_NAME);
+        dbHelper.insertData("355/01", 10_000L, 1500, 0, 25_000, "2024-01-01", "08:00:00", 1_704_096_000_000L);
+
+        CountDownLatch writing = new CountDownLatch(1);
+        Thread writer = new Thread(() -> {
+            SQLiteDatabase db = dbHelper.getWritableDatabase();
+            db.beginTransaction();
+            try {
+                db.execSQL("UPDATE " + DatabaseHelper.TABLE_NAME + " SET " + DatabaseHelper.COLUMN_TARIF + " = 3");
+                writing.countDown();
+                Thread.sleep(1000);
+                db.setTransactionSuccessful();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                db.endTransaction();
+            }
+        });
+        writer.start();
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+
+        long start = System.nanoTime();
+        assertEquals(10_000L, dbHelper.getRecentCount("355/01"));
+        long readMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        writer.join();
+        dbHelper.close();
+        Log.i(TAG, "read during open write transaction: " + readMillis + " ms");
+        assertTrue("Read waited " + readMillis + " ms for the writer", readMillis < 500);
+    }
+
+    private String measure(boolean persistent) {
+        DatabaseHelper dbHelper = new DatabaseHelper(context, DB_NAME);
+        dbHelper.setWriteAheadLoggingEnabled(persistent);
+
+        long[] inserts = new long[OPERATIONS];
+        long[] reads = new long[OPERATIONS];
+        long readAt = 1_704_096_000_000L;
+
+        for (int i = 0; i < OPERATIONS; i++) {
+            String block = String.format(Locale.US, "355/%02d", i % 66 + 1);
+
+            long start = System.nanoTime();
+            dbHelper.insertData(block, i * 10_000L, 1500, 5000, 25_000, "2024-01-01", "08:00:00", readAt + i * 1000L);
+            if (!persistent) {
+                dbHelper.close(); // what insertData used to do
+            }
+            inserts[i] = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            dbHelper.getRecentCount(block);
+            reads[i] = System.nanoTime() - start;
+        }
+        dbHelper.close();
+
+        return "insert " + percentiles(inserts) + ", read " + percentiles(reads);
+    }
+
+    private static String percentiles(long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return String.format(Locale.US, "p50=%dus p95=%dus p99=%dus",
+                sorted[sorted.length / 2] / 1000,
+                sorted[sorted.length * 95 / 100] / 1000,
+                sorted[sorted.length * 99 / 100] / 1000);
+    }
+}
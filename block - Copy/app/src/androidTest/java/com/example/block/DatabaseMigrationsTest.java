@@ -0,0 +1,229 @@
+package com.example.block;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * Upgrades a synthetic version 3 database with a few hundred thousand readings.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DatabaseMigrationsTest {
+
+    private static final String DB_NAME = "migration-test.db";
+    private static final int BLOCKS = 66;
+    private static final int ROWS = 300_000;
+
+    private Context context;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        createVersion3Database();
+    }
+
+    @After
+    public void tearDown() {
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void upgradeKeepsEveryReadingAndBackfillsDerivedColumns() {
+        DatabaseHelper helper = new DatabaseHelper(context, DB_NAME);
+        SQLiteDatabase db = helper.getWritableDatabase();
+
+        assertEquals(ROWS, DatabaseUtils.queryNumEntries(db, DatabaseHelper.TABLE_NAME));
+        assertEquals(0, DatabaseUtils.queryNumEntries(db, DatabaseMigrations.TABLE_BACKFILL));
+        assertEquals(0, DatabaseUtils.queryNumEntries(db, DatabaseHelper.TABLE_NAME,
+                DatabaseHelper.COLUMN_READ_AT + " IS NULL OR " + DatabaseHelper.COLUMN_USED_COUNT + " IS NULL"));
+
+        // Every block's meter advances by 10 kWh per round, starting from 0
+        assertEquals(0, DatabaseUtils.queryNumEntries(db, DatabaseHelper.TABLE_NAME,
+                DatabaseHelper.COLUMN_USED_COUNT + " <> 10000"));
+
+        // Amounts were converted to fixed-point: 78.75 Birr billed, 2.5 Birr/kWh, 15 %
+        assertEquals(0, DatabaseUtils.queryNumEntries(db, DatabaseHelper.TABLE_NAME,
+                DatabaseHelper.COLUMN_FINAL_PAYMENT + " <> 7875 OR " + DatabaseHelper.COLUMN_TARIF + " <> 25000 OR " +
+                        DatabaseHelper.COLUMN_VAT + " <> 1500 OR typeof(" + DatabaseHelper.COLUMN_ENERGY_COUNT + ") <> 'integer'"));
+        assertEquals(0, DatabaseUtils.longForQuery(db,
+                "SELECT COUNT(*) FROM sqlite_master WHERE name = ?", new String[]{DatabaseMigrations.TABLE_FIXED_POINT}));
+
+        assertEquals(expectedReadAt(0), firstReadAt(db));
+
+        // Every reading has its Ethiopian billing period, and the period index is in place
+        assertEquals(0, DatabaseUtils.queryNumEntries(db, DatabaseHelper.TABLE_NAME,
+                DatabaseHelper.COLUMN_ETH_PERIOD + " IS NULL"));
+        assertEquals(DatabaseHelper.ethiopianPeriod(expectedReadAt(0)), DatabaseUtils.longForQuery(db,
+                "SELECT " + DatabaseHelper.COLUMN_ETH_PERIOD + " FROM " + DatabaseHelper.TABLE_NAME +
+                        " ORDER BY " + DatabaseHelper.COLUMN_ID + " LIMIT 1", null));
+        assertEquals(1, DatabaseUtils.longForQuery(db,
+                "SELECT COUNT(*) FROM sqlite_master WHERE name = ?", new String[]{DatabaseHelper.INDEX_PERIOD_HOUSE}));
+
+        // Per-block monthly sums were filled from the readings
+        assertEquals(ROWS, DatabaseUtils.longForQuery(db,
+                "SELECT SUM(" + BlockPeriodTotals.COLUMN_READINGS + ") FROM " + BlockPeriodTotals.TABLE, null));
+        assertEquals(DatabaseUtils.longForQuery(db, "SELECT SUM(final_payment) FROM data", null),
+                DatabaseUtils.longForQuery(db, "SELECT SUM(final_payment) FROM " + BlockPeriodTotals.TABLE, null));
+        helper.close();
+    }
+
+    @Test
+    public void interruptedBackfillResumesFromLastCommittedChunk() {
+        SQLiteDatabase raw = SQLiteDatabase.openDatabase(
+                context.getDatabasePath(DB_NAME).getPath(), null, SQLiteDatabase.OPEN_READWRITE);
+        raw.beginTransaction();
+        try {
+            DatabaseMigrations.migrate(raw, 3, DatabaseHelper.DATABASE_VERSION);
+            raw.setVersion(DatabaseHelper.DATABASE_VERSION);
+            raw.setTransactionSuccessful();
+        } finally {
+            raw.endTransaction();
+        }
+
+        // Simulate the process dying after five chunks
+        assertFalse(DatabaseMigrations.runPendingBackfills(raw, 5));
+        long done = 5L * DatabaseMigrations.CHUNK_SIZE;
+        assertEquals(done, DatabaseUtils.longForQuery(raw,
+                "SELECT last_id FROM " + DatabaseMigrations.TABLE_BACKFILL + " ORDER BY version LIMIT 1", null));
+        assertEquals(ROWS - done, DatabaseUtils.queryNumEntries(raw, DatabaseHelper.TABLE_NAME,
+                DatabaseHelper.COLUMN_READ_AT + " IS NULL"));
+        raw.close();
+
+        // Reopening through the helper picks the back-fills up again
+        DatabaseHelper helper = new DatabaseHelper(context, DB_NAME);
+        SQLiteDatabase db = helper.getWritableDatabase();
+        assertEquals(0, DatabaseUtils.queryNumEntries(db, DatabaseMigrations.TABLE_BACKFILL));
+        assertEquals(0, DatabaseUtils.queryNumEntries(db, DatabaseHelper.TABLE_NAME,
+                DatabaseHelper.COLUMN_USED_COUNT + " IS NULL OR " + DatabaseHelper.COLUMN_USED_COUNT + " <> 10000 OR " +
+                        DatabaseHelper.COLUMN_ETH_PERIOD + " IS NULL"));
+        helper.close();
+    }
+
+    @Test
+    public void upgradeMovesOtherSpellingsOfABlockToItsCanonicalHouseNumber() {
+        // Half of block 7's readings were typed as "355/7", so each spelling skipped every other round
+        SQLiteDatabase raw = SQLiteDatabase.openDatabase(
+                context.getDatabasePath(DB_NAME).getPath(), null, SQLiteDatabase.OPEN_READWRITE);
+        raw.execSQL("UPDATE data SET house_number = '355/7' WHERE house_number = '355/07' AND (_id / ?) % 2 = 1",
+                new Object[]{BLOCKS});
+        raw.close();
+
+        DatabaseHelper helper = new DatabaseHelper(context, DB_NAME);
+        SQLiteDatabase db = helper.getWritableDatabase();
+        assertEquals(0, DatabaseUtils.queryNumEntries(db, DatabaseHelper.TABLE_NAME,
+                DatabaseHelper.COLUMN_HOUSE_NUMBER + " = '355/7'"));
+        assertEquals(ROWS / BLOCKS + (ROWS % BLOCKS >= 7 ? 1 : 0), DatabaseUtils.queryNumEntries(db,
+                DatabaseHelper.TABLE_NAME, DatabaseHelper.COLUMN_HOUSE_NUMBER + " = '355/07'"));
+
+        // Billed again as one block: 10 kWh per round, 78.75 Birr, and the monthly sums agree
+        assertEquals(0, DatabaseUtils.queryNumEntries(db, DatabaseHelper.TABLE_NAME,
+                DatabaseHelper.COLUMN_USED_COUNT + " <> 10000"));
+        assertEquals(0, DatabaseUtils.queryNumEntries(db, DatabaseHelper.TABLE_NAME,
+                DatabaseHelper.COLUMN_FINAL_PAYMENT + " <> 7875"));
+        assertEquals(0, DatabaseUtils.queryNumEntries(db, BlockPeriodTotals.TABLE,
+                DatabaseHelper.COLUMN_HOUSE_NUMBER + " = '355/7'"));
+        assertEquals(DatabaseUtils.longForQuery(db,
+                        "SELECT SUM(used_count) FROM data WHERE house_number = '355/07'", null),
+                DatabaseUtils.longForQuery(db,
+                        "SELECT SUM(used_count) FROM " + BlockPeriodTotals.TABLE + " WHERE house_number = '355/07'", null));
+        helper.close();
+    }
+
+    @Test
+    public void upgradedSchemaMatchesFreshInstall() {
+        DatabaseHelper upgraded = new DatabaseHelper(context, DB_NAME);
+        List<String> upgradedColumns = columns(upgraded.getReadableDatabase());
+        upgraded.close();
+
+        String freshName = "migration-fresh.db";
+        context.deleteDatabase(freshName);
+        DatabaseHelper fresh = new DatabaseHelper(context, freshName);
+        List<String> freshColumns = columns(fresh.getReadableDatabase());
+        fresh.close();
+        context.deleteDatabase(freshName);
+
+        assertEquals(freshColumns, upgradedColumns);
+    }
+
+    // Version 3 schema, one round of readings for all blocks per day
+    private void createVersion3Database() {
+        SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(context.getDatabasePath(DB_NAME), null);
+        db.execSQL("CREATE TABLE data (" +
+                "_id INTEGER PRIMARY KEY AUTOINCREMENT, house_number TEXT, energy_count REAL, vat REAL, " +
+                "additional_payment REAL, final_payment REAL, tarif REAL, date TEXT, time TEXT);");
+
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.US);
+        SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm:ss", Locale.US);
+        SQLiteStatement insert = db.compileStatement(
+                "INSERT INTO data (house_number, energy_count, vat, additional_payment, final_payment, " +
+                        "tarif, date, time) VALUES (?, ?, 15, 50, ?, 2.5, ?, ?)");
+
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < ROWS; i++) {
+                int round = i / BLOCKS;
+                int block = i % BLOCKS + 1;
+                long readAt = expectedReadAt(i);
+
+                insert.bindString(1, String.format(Locale.US, "355/%02d", block));
+                insert.bindDouble(2, (round + 1) * 10.0);
+                insert.bindDouble(3, 10 * 2.5 * 1.15 + 50);
+                insert.bindString(4, dateFormat.format(readAt));
+                insert.bindString(5, timeFormat.format(readAt));
+                insert.executeInsert();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        insert.close();
+        db.setVersion(3);
+        db.close();
+    }
+
+    // Row i is read on day i / BLOCKS, one minute after the previous block
+    private static long expectedReadAt(int i) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(2015, Calendar.JANUARY, 1, 8, 0, 0);
+        calendar.add(Calendar.DAY_OF_YEAR, i / BLOCKS);
+        calendar.add(Calendar.MINUTE, i % BLOCKS);
+        return calendar.getTimeInMillis();
+    }
+
+    private static long firstReadAt(SQLiteDatabase db) {
+        return DatabaseUtils.longForQuery(db,
+                "SELECT " + DatabaseHelper.COLUMN_READ_AT + " FROM " + DatabaseHelper.TABLE_NAME +
+                        " ORDER BY " + DatabaseHelper.COLUMN_ID + " LIMIT 1", null);
+    }
+
+    private static List<String> columns(SQLiteDatabase db) {
+        List<String> columns = new ArrayList<>();
+        Cursor c = db.rawQuery("PRAGMA table_info(" + DatabaseHelper.TABLE_NAME + ")", null);
+        while (c.moveToNext()) {
+            columns.add(c.getString(c.getColumnIndexOrThrow("name")) + " " +
+                    c.getString(c.getColumnIndexOrThrow("type")));
+        }
+        c.close();
+        return columns;
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.block;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * "New since last export": watermarks only move forward, and the range query returns exactly the
+ * readings entered after one.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ExportWatermarksTest {
+
+    private static final String DB_NAME = "export-watermarks-test.db";
+
+    private Context context;
+    private DatabaseHelper dbHelper;
+    private ExportWatermarks watermarks;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        dbHelper = new DatabaseHelper(context, DB_NAME);
+        watermarks = new ExportWatermarks(context);
+        clearWatermarks();
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+        context.deleteDatabase(DB_NAME);
+        clearWatermarks();
+    }
+
+    @Test
+    public void watermarkOnlyMovesForward() {
+        String target = ExportWatermarks.target("csv", null);
+        assertEquals(0, watermarks.lastId(target));
+
+        watermarks.advance(target, 50, 1000);
+        watermarks.advance(target, 20, 2000);
+        assertEquals(50, watermarks.lastId(target));
+        assertEquals(1000, watermarks.lastExportedAt(target));
+        assertEquals(0, watermarks.lastId(ExportWatermarks.target("pdf", null)));
+        assertEquals(0, watermarks.lastId(ExportWatermarks.target("csv", "355/01")));
+    }
+
+    @Test
+    public void rangeReturnsOnlyNewReadings() {
+        insertReadings(0, 132);
+        long exported = dbHelper.getMaxId();
+        insertReadings(132, 10);
+        long upTo = dbHelper.getMaxId();
+        insertReadings(142, 5); // entered while the export runs; left for the next one
+
+        assertEquals(10, count(dbHelper.getRecordsAfterId(null, exported, upTo)));
+        assertEquals(1, count(dbHelper.getRecordsAfterId("355/01", exported, upTo)));
+        assertEquals(0, count(dbHelper.getRecordsAfterId(null, upTo + 5, dbHelper.getMaxId())));
+    }
+
+    private void insertReadings(int first, int count) {
+        long start = 1_600_000_000_000L;
+        for (int i = first; i < first + count; i++) {
+            dbHelper.insertData(String.format(Locale.US, "355/%02d", i % 66 + 1), i * 10_000L, 1500, 5000, 25_000,
+                    "2020-09-13", "12:00:00", start + i * 60_000L);
+        }
+    }
+
+    private static int count(Cursor c) {
+        int count = c.getCount();
+        c.close();
+        return count;
+    }
+
+    private void clearWatermarks() {
+        context.getSharedPreferences("export_watermarks", Context.MODE_PRIVATE).edit().clear().commit();
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.block;
+
+import android.app.Instrumentation;
+import android.content.Context;
+import android.content.res.Resources;
+import android.util.Log;
+import android.widget.Button;
+
+import androidx.test.core.app.ActivityScenario;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * Language toggle on the history screen: recreating the activity (the old behaviour) against the
+ * in-place switch, each timed until the main thread is idle again. The in-place switch keeps the
+ * activity and the shared database connection. Latencies are written to logcat under TAG.
+ */
+@RunWith(AndroidJUnit4.class)
+public class LanguageToggleBenchmark {
+
+    private static final String TAG = "LanguageToggleBenchmark";
+    private static final int TOGGLES = 20;
+
+    private Context context;
+    private Instrumentation instrumentation;
+    private String savedLanguage;
+
+    @Before
+    public void setUp() {
+        instrumentation = InstrumentationRegistry.getInstrumentation();
+        context = instrumentation.getTargetContext();
+        savedLanguage = LocaleHelper.getLanguage(context);
+        LocaleHelper.setLocale(context, "en");
+    }
+
+    @After
+    public void tearDown() {
+        LocaleHelper.setLocale(context, savedLanguage);
+    }
+
+    @Test
+    public void switchesInPlaceWithoutReopeningTheDatabase() {
+        DatabaseHelper dbHelper = ReadingRepository.getInstance(context).getDatabaseHelper();
+        try (ActivityScenario<MainActivity2> scenario = ActivityScenario.launch(MainActivity2.class)) {
+            MainActivity2[] before = new MainActivity2[1];
+            scenario.onActivity(activity -> {
+                before[0] = activity;
+                LocaleHelper.switchLanguage(activity, "am");
+            });
+            instrumentation.waitForIdleSync();
+
+            Resources amharic = LocaleHelper.getResources(context, "am");
+            scenario.onActivity(activity -> {
+                assertSame(before[0], activity);
+                Button search = activity.findViewById(R.id.searchButton);
+                assertEquals(amharic.getString(R.string.search_property), search.getText().toString());
+                assertEquals(amharic.getString(R.string.required), activity.getString(R.string.required));
+            });
+        }
+        assertSame(dbHelper, ReadingRepository.getInstance(context).getDatabaseHelper());
+        assertTrue(dbHelper.getReadableDatabase().isOpen());
+    }
+
+    @Test
+    public void toggleLatencyRecreateAgainstInPlace() {
+        long[] recreate = new long[TOGGLES];
+        try (ActivityScenario<MainActivity2> scenario = ActivityScenario.launch(MainActivity2.class)) {
+            for (int i = 0; i < TOGGLES; i++) {
+                String lang = i % 2 == 0 ? "am" : "en";
+                long start = System.nanoTime();
+                LocaleHelper.setLocale(context, lang);
+                scenario.recreate();
+                instrumentation.waitForIdleSync();
+                recreate[i] = System.nanoTime() - start;
+            }
+        }
+
+        LocaleHelper.setLocale(context, "en");
+        long[] inPlace = new long[TOGGLES];
+        try (ActivityScenario<MainActivity2> scenario = ActivityScenario.launch(MainActivity2.class)) {
+            for (int i = 0; i < TOGGLES; i++) {
+                String lang = i % 2 == 0 ? "am" : "en";
+                long start = System.nanoTime();
+                scenario.onActivity(activity -> LocaleHelper.switchLanguage(activity, lang));
+                instrumentation.waitForIdleSync();
+                inPlace[i] = System.nanoTime() - start;
+            }
+        }
+
+        Log.i(TAG, "recreate(): " + percentiles(recreate));
+        Log.i(TAG, "in place: " + percentiles(inPlace));
+    }
+
+    private static String percentiles(long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return String.format(Locale.US, "p50=%.1fms p95=%.1fms max=%.1fms",
+                sorted[sorted.length / 2] / 1e6,
+                sorted[sorted.length * 95 / 100] / 1e6,
+                sorted[sorted.length - 1] / 1e6);
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.block;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * The in-memory latest reading per block agrees with the database across inserts, deletes and reopening.
+ */
+@RunWith(AndroidJUnit4.class)
+public class LatestReadingCacheTest {
+
+    private static final String DB_NAME = "latest-reading-test.db";
+    private static final long START = 1_600_000_000_000L;
+
+    private Context context;
+    private DatabaseHelper dbHelper;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        dbHelper = new DatabaseHelper(context, DB_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void followsInsertsAndDeletes() {
+        assertEquals(0, dbHelper.getRecentCount("355/07"));
+
+        insert("355/07", 10_000, 0);
+        long middle = insert("355/07", 20_000, 1);
+        long last = insert("355/07", 35_000, 2);
+        assertEquals(35_000, dbHelper.getRecentCount("355/07"));
+        assertEquals(35_000, recentCountFromDatabase("355/07"));
+
+        // A late reading ordered before the latest does not replace it
+        insert("355/07", 15_000, -1);
+        assertEquals(35_000, dbHelper.getRecentCount("355/07"));
+
+        dbHelper.deleteRow(last);
+        assertEquals(20_000, dbHelper.getRecentCount("355/07"));
+        dbHelper.deleteRow(middle);
+        assertEquals(10_000, dbHelper.getRecentCount("355/07"));
+        assertEquals(recentCountFromDatabase("355/07"), dbHelper.getRecentCount("355/07"));
+    }
+
+    @Test
+    public void newReadingIsBilledAgainstCachedLatest() {
+        insert("355/12", 10_000, 0);
+        // 5 kWh at 2.5 Birr/kWh + 15 % VAT + 50 Birr
+        assertEquals(1250 + 188 + 5000, dbHelper.insertData("355/12", 15_000, 1500, 5000, 25_000,
+                "2020-09-13", "12:02:00", START + 2 * 60_000L));
+    }
+
+    @Test
+    public void backDatedReadingRebillsTheNextOne() {
+        insert("355/12", 10_000, 0);
+        long next = insert("355/12", 30_000, 2);
+        insert("355/12", 15_000, 1);
+
+        // 15 kWh since the back-dated reading at 2.5 Birr/kWh + 15 % VAT + 50 Birr
+        Cursor c = dbHelper.getReadableDatabase().rawQuery(
+                "SELECT used_count, final_payment FROM data WHERE _id=?", new String[]{String.valueOf(next)});
+        assertTrue(c.moveToFirst());
+        assertEquals(15_000, c.getLong(0));
+        assertEquals(3750 + 563 + 5000, c.getLong(1));
+        c.close();
+    }
+
+    @Test
+    public void groupCommitUpdatesTheCacheOnceCommitted() {
+        insert("355/12", 10_000, 0);
+        long other = insert("355/13", 10_000, 0);
+
+        DatabaseHelper.Write first = insertWrite("355/12", 20_000, 1);
+        DatabaseHelper.Write delete = new DatabaseHelper.Write();
+        delete.deleteId = other;
+        DatabaseHelper.Write second = insertWrite("355/12", 30_000, 2);
+        dbHelper.applyWrites(new DatabaseHelper.Write[]{first, delete, second}, 3);
+
+        // Billed against the group's first reading, which the cache only learns of after the commit:
+        // 10 kWh at 2.5 Birr/kWh + 15 % VAT + 50 Birr
+        assertEquals(2500 + 375 + 5000, second.reading.finalPayment);
+        assertEquals(30_000, dbHelper.getRecentCount("355/12"));
+        assertEquals(0, dbHelper.getRecentCount("355/13"));
+        assertEquals(recentCountFromDatabase("355/13"), dbHelper.getRecentCount("355/13"));
+    }
+
+    @Test
+    public void warmedFromDatabaseOnOpen() {
+        for (int block = Blocks.FIRST; block <= Blocks.LAST; block++) {
+            insert(Blocks.houseNumber(block), block * 1000L, 0);
+        }
+        dbHelper.close();
+
+        dbHelper = new DatabaseHelper(context, DB_NAME);
+        for (int block = Blocks.FIRST; block <= Blocks.LAST; block++) {
+            assertEquals(block * 1000L, dbHelper.getRecentCount(Blocks.houseNumber(block)));
+        }
+    }
+
+    private long insert(String block, long energy, int minute) {
+        dbHelper.insertData(block, energy, 1500, 5000, 25_000, "2020-09-13", "12:00:00", START + minute * 60_000L);
+        Cursor c = dbHelper.getReadableDatabase().rawQuery("SELECT MAX(_id) FROM data", null);
+        c.moveToFirst();
+        long id = c.getLong(0);
+        c.close();
+        return id;
+    }
+
+    private static DatabaseHelper.Write insertWrite(String block, long energy, int minute) {
+        DatabaseHelper.NewReading r = new DatabaseHelper.NewReading();
+        r.houseNumber = block;
+        r.energyCount = energy;
+        r.vat = 1500;
+        r.additionalPayment = 5000;
+        r.tarif = 25_000;
+        r.date = "2020-09-13";
+        r.time = "12:00:00";
+        r.readAt = START + minute * 60_000L;
+        DatabaseHelper.Write write = new DatabaseHelper.Write();
+        write.reading = r;
+        return write;
+    }
+
+    private long recentCountFromDatabase(String block) {
+        Cursor c = dbHelper.getReadableDatabase().rawQuery(DatabaseHelper.SQL_RECENT_COUNT, new String[]{block});
+        long count = c.moveToFirst() ? c.getLong(0) : 0;
+        c.close();
+        return count;
+    }
+}
@@ -0,0 +1,238 @@
+package com.example.block;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.graphics.Paint;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CancellationException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Streaming PDF export: parts are split at MAX_PAGES_PER_FILE, progress reaches every row, and a
+ * cancelled export leaves no files behind, and long cells are wrapped or cut to their column. Export
+ * time for 50k rows by number of formatting threads, and pages per second for Ethiopic text, are
+ * written to logcat under TAG.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PdfExporterTest {
+
+    private static final String TAG = "PdfExporterTest";
+    private static final String DB_NAME = "pdf-exporter-test.db";
+    private static final int ROWS_PER_PAGE = 18;
+
+    private Context context;
+    private DatabaseHelper dbHelper;
+    private File exportDir;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        dbHelper = new DatabaseHelper(context, DB_NAME);
+        exportDir = new File(context.getCacheDir(), "pdf-exporter-test");
+        deleteExports();
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+        context.deleteDatabase(DB_NAME);
+        deleteExports();
+    }
+
+    @Test
+    public void emptyCursorWritesNothing() throws Exception {
+        Cursor c = dbHelper.getRecords(null, Long.MIN_VALUE, Long.MAX_VALUE);
+        try {
+            assertTrue(new PdfExporter(exportDir, "empty").export(c, null).isEmpty());
+        } finally {
+            c.close();
+        }
+    }
+
+    @Test
+    public void largeExportIsSplitIntoParts() throws Exception {
+        int rows = ROWS_PER_PAGE * PdfExporter.MAX_PAGES_PER_FILE + 10;
+        insertReadings(rows);
+
+        int[] lastProgress = new int[2];
+        Cursor c = dbHelper.getRecords(null, Long.MIN_VALUE, Long.MAX_VALUE);
+        List<File> files;
+        try {
+            files = new PdfExporter(exportDir, "large").export(c, (written, total, pages) -> {
+                lastProgress[0] = written;
+                lastProgress[1] = total;
+            });
+        } finally {
+            c.close();
+        }
+
+        assertEquals(2, files.size());
+        assertEquals("large.pdf", files.get(0).getName());
+        assertEquals("large_part2.pdf", files.get(1).getName());
+        for (File f : files) {
+            assertTrue(f.length() > 0);
+        }
+        assertEquals(rows, lastProgress[0]);
+        assertEquals(rows, lastProgress[1]);
+    }
+
+    @Test
+    public void cancelledExportLeavesNoFiles() throws Exception {
+        insertReadings(ROWS_PER_PAGE * PdfExporter.MAX_PAGES_PER_FILE + 10);
+
+        PdfExporter exporter = new PdfExporter(exportDir, "cancelled");
+        Cursor c = dbHelper.getRecords(null, Long.MIN_VALUE, Long.MAX_VALUE);
+        try {
+            exporter.export(c, (written, total, pages) -> {
+                // Cancel as the first part fills up, so it is on disk before the next row is checked
+                if (pages == PdfExporter.MAX_PAGES_PER_FILE) exporter.cancel();
+            });
+            fail("Export was not cancelled");
+        } catch (CancellationException expected) {
+            // expected
+        } finally {
+            c.close();
+        }
+
+        String[] left = exportDir.list();
+        assertTrue(left == null || left.length == 0);
+    }
+
+    @Test
+    public void formattingThreadsScale() throws Exception {
+        int rows = 50_000;
+        insertReadings(rows);
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        int[] threadCounts = {1, 2, Math.max(1, cores - 1)};
+        long expectedPages = -1;
+        for (int threads : threadCounts) {
+            long[] pages = new long[1];
+            Cursor c = dbHelper.getRecords(null, Long.MIN_VALUE, Long.MAX_VALUE);
+            long start = System.nanoTime();
+            try {
+                new PdfExporter(exportDir, "scale" + threads, threads)
+                        .export(c, (written, total, pagesWritten) -> pages[0] = pagesWritten);
+            } finally {
+                c.close();
+            }
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            Log.i(TAG, String.format(Locale.US, "%d rows, %d formatting threads (%d cores): %d ms, %d pages",
+                    rows, threads, cores, millis, pages[0]));
+
+            if (expectedPages < 0) expectedPages = pages[0];
+            assertEquals(expectedPages, pages[0]);
+            deleteExports();
+        }
+    }
+
+    @Test
+    public void longCellsAreWrappedOrCutToTheirColumn() {
+        Paint paint = new Paint();
+        TextWidthCache cache = new TextWidthCache();
+        float available = 70f;
+
+        String[] shortCell = PdfRowFormatter.fit("355/01", available, paint, cache);
+        assertArrayEquals(new String[]{"355/01"}, shortCell);
+
+        String[] wrapped = PdfRowFormatter.fit("መስከረም ፲፫ ቀን", available, paint, cache);
+        assertEquals(2, wrapped.length);
+        assertEquals("መስከረም", wrapped[0]);
+
+        String[] cut = PdfRowFormatter.fit("ጠቅላላ ክፍያ ያልተከፈለ ወርሃዊ መዋጮ ከሰዓት በኋላ", available, paint, cache);
+        assertEquals(2, cut.length);
+        assertTrue(cut[1].endsWith(PdfRowFormatter.ELLIPSIS));
+        for (String line : wrapped) assertTrue(paint.measureText(line) <= available);
+        for (String line : cut) assertTrue(paint.measureText(line) <= available);
+    }
+
+    @Test
+    public void wideColumnsShareWhatIsLeftOfThePage() {
+        float[] widths = PdfTableLayout.fit(new float[]{40, 300, 500}, 575);
+        assertEquals(40, widths[0], 0.01);
+        assertEquals(267.5, widths[1], 0.01);
+        assertEquals(267.5, widths[2], 0.01);
+
+        float[] spare = PdfTableLayout.fit(new float[]{40, 60}, 200);
+        assertEquals(90, spare[0], 0.01);
+        assertEquals(110, spare[1], 0.01);
+    }
+
+    @Test
+    public void ethiopicPagesPerSecond() throws Exception {
+        int rows = 20_000;
+        String[] months = {"መስከረም", "ጥቅምት", "ኅዳር", "ታኅሣሥ", "ጥር", "የካቲት", "መጋቢት", "ሚያዝያ", "ግንቦት", "ሰኔ",
+                "ሐምሌ", "ነሐሴ", "ጳጉሜን"};
+        String[] times = {"ከጠዋቱ", "ከሰዓት በኋላ", "ምሽት"};
+        long start = 1_600_000_000_000L;
+        DatabaseHelper.NewReading[] batch = new DatabaseHelper.NewReading[rows];
+        for (int i = 0; i < rows; i++) {
+            DatabaseHelper.NewReading r = new DatabaseHelper.NewReading();
+            r.houseNumber = Blocks.houseNumber(i % Blocks.LAST + 1);
+            r.energyCount = (i / Blocks.LAST + 1) * 10_000L;
+            r.vat = 1500;
+            r.additionalPayment = 5000;
+            r.tarif = 25_000;
+            r.date = months[i % months.length] + " " + (i % 30 + 1) + " ቀን " + (2013 + i / 20_000) + " ዓ.ም";
+            r.time = times[i % times.length] + " " + (i % 12 + 1) + ":00";
+            r.readAt = start + i * 60_000L;
+            batch[i] = r;
+        }
+        dbHelper.insertReadings(batch, rows);
+
+        long[] pages = new long[1];
+        PdfExporter exporter = new PdfExporter(exportDir, "ethiopic");
+        Cursor c = dbHelper.getRecords(null, Long.MIN_VALUE, Long.MAX_VALUE);
+        long startNanos = System.nanoTime();
+        try {
+            exporter.export(c, (written, total, pagesWritten) -> pages[0] = pagesWritten);
+        } finally {
+            c.close();
+        }
+        long millis = (System.nanoTime() - startNanos) / 1_000_000;
+        TextWidthCache cache = exporter.textWidths();
+        Log.i(TAG, String.format(Locale.US, "%d Ethiopic rows: %d pages in %d ms (%.1f pages/s), width cache %d hits / %d misses",
+                rows, pages[0], millis, pages[0] * 1000.0 / Math.max(1, millis), cache.hits(), cache.misses()));
+        assertTrue(cache.hits() > cache.misses());
+    }
+
+    // Each block's meter advances 10 kWh per reading
+    private void insertReadings(int count) {
+        long start = 1_600_000_000_000L;
+        DatabaseHelper.NewReading[] batch = new DatabaseHelper.NewReading[count];
+        for (int i = 0; i < count; i++) {
+            DatabaseHelper.NewReading r = new DatabaseHelper.NewReading();
+            r.houseNumber = Blocks.houseNumber(i % Blocks.LAST + 1);
+            r.energyCount = (i / Blocks.LAST + 1) * 10_000L;
+            r.vat = 1500;
+            r.additionalPayment = 5000;
+            r.tarif = 25_000;
+            r.date = "2020-09-13";
+            r.time = "12:00:00";
+            r.readAt = start + i * 60_000L;
+            batch[i] = r;
+        }
+        dbHelper.insertReadings(batch, count);
+    }
+
+    private void deleteExports() {
+        File[] files = exportDir.listFiles();
+        if (files != null) {
+            for (File f : files) f.delete();
+        }
+    }
+}
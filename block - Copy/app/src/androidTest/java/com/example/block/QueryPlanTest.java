@@ -0,0 +1,163 @@
+package com.example.block;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * Fails when a DatabaseHelper query falls back to a full table scan or a temporary sort.
+ */
+@RunWith(AndroidJUnit4.class)
+public class QueryPlanTest {
+
+    private static final String DB_NAME = "query-plan-test.db";
+
+    private Context context;
+    private DatabaseHelper dbHelper;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        dbHelper = new DatabaseHelper(context, DB_NAME);
+
+        long start = 1_600_000_000_000L;
+        for (int i = 0; i < 200; i++) {
+            dbHelper.insertData("355/" + String.format(Locale.US, "%02d", i % 66 + 1), i * 10_000L, 1500, 5000, 25_000,
+                    "2020-09-13", "12:00:00", start + i * 60_000L);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void recentCountUsesIndex() {
+        assertIndexed(DatabaseHelper.SQL_RECENT_COUNT, "355/01");
+    }
+
+    @Test
+    public void allDataUsesIndex() {
+        assertIndexed(DatabaseHelper.SQL_ALL_DATA);
+    }
+
+    @Test
+    public void recordsByBlockUseIndex() {
+        assertIndexed(DatabaseHelper.SQL_RECORDS_BY_BLOCK, "355/01");
+    }
+
+    @Test
+    public void recordsBetweenUseIndex() {
+        assertIndexed(DatabaseHelper.SQL_RECORDS_BETWEEN, "0", String.valueOf(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void recordsByBlockBetweenUseIndex() {
+        assertIndexed(DatabaseHelper.SQL_RECORDS_BY_BLOCK_BETWEEN, "355/01", "0", String.valueOf(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void recordsByBlockPageUseIndex() {
+        assertIndexed(DatabaseHelper.SQL_RECORDS_BY_BLOCK_PAGE + " LIMIT 50", "355/01",
+                "1600000000000", "1600000000000", "10");
+    }
+
+    @Test
+    public void previousEnergyAtUsesIndex() {
+        assertIndexed(DatabaseHelper.SQL_PREVIOUS_ENERGY_AT, "355/01", "2020-09-13", "12:00:00");
+    }
+
+    @Test
+    public void previousEnergyBeforeUsesIndex() {
+        assertIndexed(DatabaseHelper.SQL_PREVIOUS_ENERGY_BEFORE, "355/01", "1600000000000", "1600000000000", "10");
+    }
+
+    @Test
+    public void nextReadingAfterUsesIndex() {
+        assertIndexed(DatabaseHelper.SQL_NEXT_READING_AFTER, "355/01", "1600000000000", "1600000000000", "10");
+    }
+
+    @Test
+    public void latestReadingUsesIndex() {
+        assertIndexed(DatabaseHelper.SQL_LATEST_READING, "355/01");
+    }
+
+    @Test
+    public void latestPerBlockSeeksEachBlock() {
+        assertIndexed(DatabaseHelper.SQL_LATEST_PER_BLOCK);
+    }
+
+    @Test
+    public void recordsInPeriodUsesIndex() {
+        assertIndexed(DatabaseHelper.SQL_RECORDS_IN_PERIOD, "201301");
+    }
+
+    @Test
+    public void blockTotalsInPeriodUsesIndex() {
+        assertIndexed(BlockPeriodTotals.SQL_PERIOD, "201301");
+    }
+
+    @Test
+    public void blockHistoryUsesPrimaryKey() {
+        assertIndexed(BlockPeriodTotals.SQL_BLOCK_RANGE, "355/01", "201301", "201313");
+    }
+
+    @Test
+    public void blockTotalsOverRangeSeekEachBlock() {
+        assertIndexed(BlockPeriodTotals.SQL_RANGE_BY_BLOCK, "201301", "201313");
+    }
+
+    @Test
+    public void recordsAfterIdUsePrimaryKey() {
+        assertIndexed(DatabaseHelper.SQL_RECORDS_AFTER_ID, "100", "200");
+        assertIndexed(DatabaseHelper.SQL_RECORDS_BY_BLOCK_AFTER_ID, "355/01", "100", "200");
+        assertIndexed(DatabaseHelper.SQL_MAX_ID);
+    }
+
+    @Test
+    public void readingByIdUsesPrimaryKey() {
+        assertIndexed(DatabaseHelper.SQL_READING_BY_ID, "1");
+    }
+
+    @Test
+    public void readingRowUsesPrimaryKey() {
+        assertIndexed(DatabaseHelper.SQL_READING_ROW, "1");
+    }
+
+    private void assertIndexed(String sql, String... args) {
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        List<String> plan = new ArrayList<>();
+        Cursor c = db.rawQuery("EXPLAIN QUERY PLAN " + sql, args);
+        int detailIdx = c.getColumnIndexOrThrow("detail");
+        while (c.moveToNext()) {
+            plan.add(c.getString(detailIdx));
+        }
+        c.close();
+
+        assertFalse("No query plan for " + sql, plan.isEmpty());
+        for (String step : plan) {
+            // The generated block number series is scanned by design; it has at most 66 rows
+            boolean generated = step.contains("block_numbers") || step.contains("CONSTANT ROW");
+            boolean fullScan = step.startsWith("SCAN") && !step.contains("INDEX") && !generated;
+            boolean tempSort = step.contains("TEMP B-TREE");
+            assertFalse("Query regressed to '" + step + "': " + sql, fullScan || tempSort);
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.block;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * CSV import validates like the submit form, bills like insertData, and imports 100k rows in
+ * chunked transactions. The 100k timing is written to logcat under TAG.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ReadingImporterTest {
+
+    private static final String TAG = "ReadingImporterTest";
+    private static final String DB_NAME = "importer-test.db";
+    private static final TimeZone ADDIS_ABABA = TimeZone.getTimeZone("Africa/Addis_Ababa");
+
+    private Context context;
+    private DatabaseHelper dbHelper;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        dbHelper = new DatabaseHelper(context, DB_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void reportsInvalidLinesAndImportsTheRest() throws IOException {
+        String csv = "house_number,energy_count,tarif,vat,additional_payment,date,time\n" +
+                "355/01,100,2.5,15,50,2024-01-01,09:30:00\n" +
+                "355/99,100,2.5,15,50,2024-01-01,09:30:00\n" +
+                "356/01,100,2.5,15,50,2024-01-01,09:30:00\n" +
+                "355/02,abc,2.5,15,50,2024-01-01,09:30:00\n" +
+                "355/02,100,2.5,15,50,2024-02-30,09:30:00\n" +
+                "355/02,100,2.5\n" +
+                "\n" +
+                "\"355/01\",\"1,105\",2.5,15,50,2024-01-02,09:30\n";
+
+        ReadingImporter.Result result = new ReadingImporter(dbHelper, ADDIS_ABABA).importCsv(new StringReader(csv));
+
+        assertEquals(2, result.imported);
+        assertEquals(5, result.rejected);
+        assertEquals(3, result.errors.get(0).line);
+        assertEquals(R.string.block_range_error, result.errors.get(0).message);
+        assertEquals(R.string.block_must_start, result.errors.get(1).message);
+        assertEquals(R.string.invalid_number_format, result.errors.get(2).message);
+        assertEquals(R.string.invalid_date, result.errors.get(3).message);
+        assertEquals(R.string.invalid_columns, result.errors.get(4).message);
+
+        // The second reading is billed against the first: 1005 kWh at 2.5 Birr/kWh + 15 % + 50 Birr
+        assertEquals(1_105_000, dbHelper.getRecentCount("355/01"));
+        assertEquals(251_250 + 37_688 + 5000, DatabaseUtils.longForQuery(dbHelper.getReadableDatabase(),
+                "SELECT final_payment FROM data ORDER BY _id DESC LIMIT 1", null));
+        assertEquals("09:30:00", DatabaseUtils.stringForQuery(dbHelper.getReadableDatabase(),
+                "SELECT time FROM data ORDER BY _id DESC LIMIT 1", null));
+    }
+
+    @Test
+    public void billsTheSameAsInsertData() throws IOException {
+        StringBuilder csv = new StringBuilder();
+        long day = 86_400_000L;
+        long start = 1_704_090_600_000L; // 2024-01-01 09:30 in Addis Ababa
+        // Out of order on purpose, so both the batch fast path and the database lookup are used
+        int[] order = {0, 2, 1, 3, 5, 4};
+        for (int i : order) {
+            csv.append(String.format(Locale.US, "355/07,%d,2.5,15,50,2024-01-%02d,09:30:00%n", 100 + i * 37, i + 1));
+        }
+        new ReadingImporter(dbHelper, ADDIS_ABABA).importCsv(new StringReader(csv.toString()));
+
+        String compareName = "importer-compare.db";
+        context.deleteDatabase(compareName);
+        DatabaseHelper compare = new DatabaseHelper(context, compareName);
+        for (int i : order) {
+            compare.insertData("355/07", (100 + i * 37) * 1000L, 1500, 5000, 25_000,
+                    String.format(Locale.US, "2024-01-%02d", i + 1), "09:30:00", start + i * day);
+        }
+        assertEquals(column(compare, "read_at"), column(dbHelper, "read_at"));
+        assertEquals(column(compare, "final_payment"), column(dbHelper, "final_payment"));
+        assertBilledAgainstPreviousInTime(dbHelper);
+        assertBilledAgainstPreviousInTime(compare);
+        compare.close();
+        context.deleteDatabase(compareName);
+    }
+
+    @Test
+    public void historicalRowsRebillTheReadingsAfterThem() throws IOException {
+        long start = 1_704_090_600_000L; // 2024-01-01 09:30 in Addis Ababa
+        dbHelper.insertData("355/07", 500_000, 1500, 5000, 25_000, "2024-01-10", "09:30:00", start + 9 * 86_400_000L);
+        dbHelper.insertData("355/07", 900_000, 1500, 5000, 25_000, "2024-01-20", "09:30:00", start + 19 * 86_400_000L);
+
+        // Older than everything stored, between the two stored readings, and before the first again
+        String csv = "355/07,300,2.5,15,50,2024-01-05,09:30:00\n" +
+                "355/07,700,2.5,15,50,2024-01-15,09:30:00\n" +
+                "355/07,100,2.5,15,50,2024-01-01,09:30:00\n";
+        assertEquals(3, new ReadingImporter(dbHelper, ADDIS_ABABA).importCsv(new StringReader(csv)).imported);
+
+        assertBilledAgainstPreviousInTime(dbHelper);
+        assertEquals(900_000, dbHelper.getRecentCount("355/07"));
+    }
+
+    @Test
+    public void unpaddedBlockNumbersImportIntoTheirBlock() throws IOException {
+        dbHelper.insertData("355/07", 100_000, 1500, 5000, 25_000, "2024-01-01", "09:30:00", 1_704_090_600_000L);
+        String csv = "355/7,150,2.5,15,50,2024-01-02,09:30:00\n" +
+                "355/007,180,2.5,15,50,2024-01-03,09:30:00\n";
+        assertEquals(2, new ReadingImporter(dbHelper, ADDIS_ABABA).importCsv(new StringReader(csv)).imported);
+
+        assertEquals(3, DatabaseUtils.queryNumEntries(dbHelper.getReadableDatabase(), DatabaseHelper.TABLE_NAME,
+                "house_number = '355/07'"));
+        assertEquals(180_000, dbHelper.getRecentCount("355/07"));
+        // Billed against the readings already in 355/07: 50 kWh, then 30 kWh
+        assertBilledAgainstPreviousInTime(dbHelper);
+        assertEquals(3, dbHelper.getReadingsPage("355/07", Long.MAX_VALUE, Long.MAX_VALUE, 10).size());
+    }
+
+    // Every reading's used_count is its energy less the block's reading just before it in time
+    private static void assertBilledAgainstPreviousInTime(DatabaseHelper helper) {
+        Cursor c = helper.getReadableDatabase().rawQuery(
+                "SELECT house_number, energy_count, used_count FROM data ORDER BY house_number, read_at, _id", null);
+        String block = null;
+        long previous = 0;
+        while (c.moveToNext()) {
+            if (!c.getString(0).equals(block)) {
+                block = c.getString(0);
+                previous = 0;
+            }
+            assertEquals(c.getLong(1) - previous, c.getLong(2));
+            previous = c.getLong(1);
+        }
+        c.close();
+    }
+
+    @Test
+    public void importsOneHundredThousandRows() throws IOException {
+        int rows = 100_000;
+        StringBuilder csv = new StringBuilder(rows * 48);
+        for (int i = 0; i < rows; i++) {
+            int round = i / Blocks.LAST;
+            int dayOfYear = round % 365;
+            csv.append(Blocks.houseNumber(i % Blocks.LAST + 1)).append(',')
+                    .append(round * 10).append(",2.5,15,50,")
+                    .append(String.format(Locale.US, "%04d-%02d-%02d", 2000 + round / 365, dayOfYear / 31 % 12 + 1,
+                            dayOfYear % 28 + 1))
+                    .append(",12:00:00\n");
+        }
+
+        long startNanos = System.nanoTime();
+        ReadingImporter.Result result = new ReadingImporter(dbHelper).importCsv(new StringReader(csv.toString()));
+        long millis = (System.nanoTime() - startNanos) / 1_000_000;
+        Log.i(TAG, String.format(Locale.US, "imported %d rows in %d ms (%.0f rows/s)",
+                result.imported, millis, result.imported * 1000.0 / Math.max(1, millis)));
+
+        assertEquals(rows, result.imported);
+        assertEquals(rows, DatabaseUtils.queryNumEntries(dbHelper.getReadableDatabase(), DatabaseHelper.TABLE_NAME));
+    }
+
+    private static String column(DatabaseHelper helper, String column) {
+        StringBuilder values = new StringBuilder();
+        Cursor c = helper.getReadableDatabase().rawQuery(
+                "SELECT " + column + " FROM data ORDER BY _id", null);
+        while (c.moveToNext()) {
+            values.append(c.getLong(0)).append(',');
+        }
+        c.close();
+        return values.toString();
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.block;
+
+import com.example.billing.EthiopianDateConverter;
+
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+/**
+ * Deterministic meter readings for the 66 blocks: the same seed, size and end time always give the
+ * same rows. Readings go round the blocks in time order over {@code years} years up to the end
+ * time, so the reading interval shrinks as the size grows (monthly at 10k over 12 years, about
+ * twice a day at 1M). Each block has its own daily use, readings jitter by up to an hour, and the
+ * tarif steps up every few years. Rows are written through insertReadings in chunks, so they are
+ * billed like readings typed in one by one.
+ */
+final class SyntheticReadings {
+
+    static final long SEED = 20_240_101L;
+    private static final int CHUNK = 1000;
+    private static final long HOUR = 3_600_000L;
+    private static final long DAY = 24 * HOUR;
+
+    private final long seed;
+    private final int years;
+    private final TimeZone zone;
+
+    SyntheticReadings(long seed, int years, TimeZone zone) {
+        this.seed = seed;
+        this.years = years;
+        this.zone = zone;
+    }
+
+    SyntheticReadings() {
+        this(SEED, 12, TimeZone.getDefault());
+    }
+
+    // Insert `count` readings ending just before endMillis
+    void fill(DatabaseHelper dbHelper, int count, long endMillis) {
+        Random random = new Random(seed);
+        int blocks = Blocks.LAST;
+
+        // Daily use per block in 0.001 kWh: mostly small flats, a few large ones
+        long[] dailyUse = new long[blocks];
+        long[] meter = new long[blocks];
+        long[] additional = new long[blocks];
+        for (int b = 0; b < blocks; b++) {
+            dailyUse[b] = 3_000 + (long) (Math.abs(random.nextGaussian()) * 9_000);
+            meter[b] = random.nextInt(5_000) * 1000L;
+            additional[b] = random.nextInt(4) == 0 ? 0 : 5000;
+        }
+
+        long span = years * 365L * DAY;
+        long start = endMillis - span;
+        int rounds = (count + blocks - 1) / blocks;
+        long interval = Math.max(60_000L, span / rounds);
+
+        DatabaseHelper.NewReading[] chunk = new DatabaseHelper.NewReading[CHUNK];
+        for (int i = 0; i < CHUNK; i++) chunk[i] = new DatabaseHelper.NewReading();
+        int pending = 0;
+
+        for (int i = 0; i < count; i++) {
+            int round = i / blocks;
+            int b = i % blocks;
+            // Blocks are read one after another within a round, a minute or so apart
+            long readAt = start + round * interval + b * 60_000L + random.nextInt((int) HOUR);
+            if (readAt >= endMillis) readAt = endMillis - (count - i);
+
+            long days = Math.max(1, interval / DAY);
+            meter[b] += dailyUse[b] * days * (80 + random.nextInt(41)) / 100;
+
+            DatabaseHelper.NewReading r = chunk[pending];
+            r.houseNumber = Blocks.houseNumber(b + 1);
+            r.energyCount = meter[b];
+            r.vat = 1500;
+            r.additionalPayment = additional[b];
+            r.tarif = tarifAt(readAt, start);
+            r.readAt = readAt;
+            setDateAndTime(r, readAt);
+
+            if (++pending == CHUNK) {
+                dbHelper.insertReadings(chunk, pending);
+                pending = 0;
+            }
+        }
+        if (pending > 0) dbHelper.insertReadings(chunk, pending);
+    }
+
+    // 0.27 Birr/kWh at the start, stepping up by 0.5 every three years
+    private long tarifAt(long readAt, long start) {
+        long step = (readAt - start) / (3 * 365L * DAY);
+        return 2_700 + step * 5_000;
+    }
+
+    private void setDateAndTime(DatabaseHelper.NewReading r, long readAt) {
+        long local = readAt + zone.getOffset(readAt);
+        long epochDay = Math.floorDiv(local, DAY);
+        int secondOfDay = (int) (Math.floorMod(local, DAY) / 1000);
+        int date = EthiopianDateConverter.epochDayToGregorian(epochDay);
+
+        r.date = EthiopianDateConverter.append(new StringBuilder(10), date).toString();
+        r.time = String.format(Locale.US, "%02d:%02d:%02d", secondOfDay / 3600, secondOfDay / 60 % 60, secondOfDay % 60);
+    }
+}
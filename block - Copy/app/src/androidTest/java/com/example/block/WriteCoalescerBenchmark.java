@@ -0,0 +1,175 @@
+package com.example.block;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * A burst of single-reading inserts, as during a billing round: one write task and one commit per
+ * reading (the old path) against WriteCoalescer's group commit. Each path logs throughput and the
+ * latency from submit to callback under TAG, and both must bill the same readings the same way.
+ */
+@RunWith(AndroidJUnit4.class)
+public class WriteCoalescerBenchmark {
+
+    private static final String TAG = "WriteCoalescerBenchmark";
+    private static final String DB_NAME = "write-coalescer-benchmark.db";
+    private static final int BURST = 5000;
+    private static final long START = 1_704_096_000_000L;
+
+    private Context context;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void burstPerWriteAgainstGroupCommit() throws Exception {
+        long[] perWrite = new long[2];
+        String before = burst(false, perWrite);
+        context.deleteDatabase(DB_NAME);
+        long[] grouped = new long[2];
+        String after = burst(true, grouped);
+
+        Log.i(TAG, "one commit per reading: " + before);
+        Log.i(TAG, "group commit: " + after);
+        assertArrayEquals(perWrite, grouped);
+        assertEquals(BURST, grouped[0]);
+    }
+
+    @Test
+    public void aBadWriteFailsOnlyItself() throws Exception {
+        DatabaseHelper dbHelper = new DatabaseHelper(context, DB_NAME);
+        ReadingRepository repository = new ReadingRepository(dbHelper);
+        try {
+            int count = 50;
+            CountDownLatch done = new CountDownLatch(count);
+            AtomicInteger failed = new AtomicInteger();
+            AtomicInteger succeeded = new AtomicInteger();
+            ReadingRepository.Callback<Long> callback = new ReadingRepository.Callback<Long>() {
+                @Override
+                public void onResult(Long result) {
+                    succeeded.incrementAndGet();
+                    done.countDown();
+                }
+
+                @Override
+                public void onError(Exception e) {
+                    failed.incrementAndGet();
+                    done.countDown();
+                }
+            };
+            for (int i = 0; i < count; i++) {
+                // A reading without a block cannot be inserted
+                String block = i == count / 2 ? null : Blocks.houseNumber(i % Blocks.LAST + 1);
+                repository.insertReading(block, (i + 1) * 10_000L, 1500, 0, 25_000, "2024-01-01", "08:00:00",
+                        START + i * 60_000L, callback);
+            }
+            assertTrue(done.await(30, TimeUnit.SECONDS));
+
+            assertEquals(1, failed.get());
+            assertEquals(count - 1, succeeded.get());
+            assertEquals(count - 1, totals(dbHelper)[0]);
+            // The rolled back group left the latest-reading cache as the database is
+            assertEquals((count - 1) * 10_000L, dbHelper.getRecentCount(Blocks.houseNumber((count - 2) % Blocks.LAST + 1)));
+        } finally {
+            dbHelper.close();
+        }
+    }
+
+    // Submit BURST inserts from this thread and wait for every callback; `totals` receives the row
+    // count and the sum of final payments
+    private String burst(boolean coalesced, long[] totals) throws Exception {
+        DatabaseHelper dbHelper = new DatabaseHelper(context, DB_NAME);
+        ReadingRepository repository = new ReadingRepository(dbHelper);
+        try {
+            long[] submitted = new long[BURST];
+            long[] acked = new long[BURST];
+            CountDownLatch done = new CountDownLatch(BURST);
+            AtomicInteger failed = new AtomicInteger();
+
+            long start = System.nanoTime();
+            for (int i = 0; i < BURST; i++) {
+                int index = i;
+                String block = Blocks.houseNumber(i % Blocks.LAST + 1);
+                long energy = (i / Blocks.LAST + 1) * 25_000L;
+                long readAt = START + i * 60_000L;
+                ReadingRepository.Callback<Long> callback = new ReadingRepository.Callback<Long>() {
+                    @Override
+                    public void onResult(Long result) {
+                        acked[index] = System.nanoTime();
+                        done.countDown();
+                    }
+
+                    @Override
+                    public void onError(Exception e) {
+                        Log.e(TAG, "Insert failed", e);
+                        failed.incrementAndGet();
+                        done.countDown();
+                    }
+                };
+                submitted[i] = System.nanoTime();
+                if (coalesced) {
+                    repository.insertReading(block, energy, 1500, 0, 25_000, "2024-01-01", "08:00:00", readAt,
+                            callback);
+                } else {
+                    repository.write(() -> dbHelper.insertData(block, energy, 1500, 0, 25_000, "2024-01-01",
+                            "08:00:00", readAt), callback);
+                }
+            }
+            assertTrue(done.await(120, TimeUnit.SECONDS));
+            long elapsed = System.nanoTime() - start;
+            assertEquals(0, failed.get());
+
+            long[] latency = new long[BURST];
+            for (int i = 0; i < BURST; i++) {
+                latency[i] = acked[i] - submitted[i];
+            }
+            long[] t = totals(dbHelper);
+            totals[0] = t[0];
+            totals[1] = t[1];
+            Arrays.sort(latency);
+            return String.format(Locale.US, "%.0f inserts/s, ack p50=%.1fms p95=%.1fms p99=%.1fms",
+                    BURST / (elapsed / 1e9),
+                    latency[BURST / 2] / 1e6,
+                    latency[BURST * 95 / 100] / 1e6,
+                    latency[BURST * 99 / 100] / 1e6);
+        } finally {
+            dbHelper.close();
+        }
+    }
+
+    private static long[] totals(DatabaseHelper dbHelper) {
+        Cursor c = dbHelper.getReadableDatabase().rawQuery("SELECT COUNT(*), SUM(" + DatabaseHelper.COLUMN_FINAL_PAYMENT
+                + ") FROM " + DatabaseHelper.TABLE_NAME, null);
+        try {
+            c.moveToFirst();
+            return new long[]{c.getLong(0), c.getLong(1)};
+        } finally {
+            c.close();
+        }
+    }
+}
@@ -1,19 +1,94 @@
 package com.example.block;
 
 import android.content.Context;
-import android.content.SharedPreferences;
+import android.content.res.Resources;
+import android.os.Bundle;
+import android.view.MenuInflater;
 
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.appcompat.view.ContextThemeWrapper;
 
-public class BaseActivity extends AppCompatActivity {
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
 
-    private static final String PREFS_NAME = "app_prefs";
-    private static final String KEY_LANGUAGE = "language";
+public class BaseActivity extends AppCompatActivity implements LocaleHelper.OnLanguageChangedListener {
 
+    // A visible string and how to put it back after a language switch
+    private static final class LocalizedString {
+        final int resId;
+        final Consumer<CharSequence> setter;
+
+        LocalizedString(int resId, Consumer<CharSequence> setter) {
+            this.resId = resId;
+            this.setter = setter;
+        }
+    }
+
+    private final List<LocalizedString> localizedStrings = new ArrayList<>();
+
+    // Language this activity's own resources were created in, and the current one when they differ
+    private String attachedLanguage;
+    private volatile String switchedLanguage;
+    private MenuInflater switchedMenuInflater;
+
+    // Apply the saved language (default English) once, before any view is inflated. loadLocale
+    // only reads the preference; setLocale would write it back on every activity start.
     @Override
     protected void attachBaseContext(Context newBase) {
-        SharedPreferences prefs = newBase.getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
-        String lang = prefs.getString(KEY_LANGUAGE, "en"); // default English
-        super.attachBaseContext(LocaleHelper.setLocale(newBase, lang));
+        attachedLanguage = LocaleHelper.getLanguage(newBase);
+        super.attachBaseContext(LocaleHelper.loadLocale(newBase));
+    }
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        LocaleHelper.addListener(this);
+    }
+
+    @Override
+    protected void onDestroy() {
+        LocaleHelper.removeListener(this);
+        super.onDestroy();
+    }
+
+    // After a switch, strings, toasts and dialogs read from the new language's resources
+    @Override
+    public Resources getResources() {
+        String lang = switchedLanguage;
+        return lang == null ? super.getResources() : LocaleHelper.getResources(this, lang);
+    }
+
+    // Menu titles come from the theme, which still has the attached language; inflate them from a
+    // context in the new one
+    @Override
+    public MenuInflater getMenuInflater() {
+        if (switchedMenuInflater != null) {
+            return switchedMenuInflater;
+        }
+        return super.getMenuInflater();
+    }
+
+    // Register a string shown by the layout so it is replaced when the language switches. The
+    // layout already shows it in the current language, so it is not set now.
+    protected void bindString(int resId, Consumer<CharSequence> setter) {
+        localizedStrings.add(new LocalizedString(resId, setter));
+    }
+
+    @Override
+    public void onLanguageChanged(String languageCode) {
+        if (languageCode.equals(attachedLanguage)) {
+            switchedLanguage = null;
+            switchedMenuInflater = null;
+        } else {
+            switchedLanguage = languageCode;
+            switchedMenuInflater = new MenuInflater(new ContextThemeWrapper(
+                    LocaleHelper.localizedContext(this, languageCode), getApplicationInfo().theme));
+        }
+        Resources resources = getResources();
+        for (LocalizedString s : localizedStrings) {
+            s.setter.accept(resources.getText(s.resId));
+        }
+        invalidateOptionsMenu();
     }
 }
@@ -0,0 +1,34 @@
+package com.example.block;
+
+import android.app.Application;
+import android.content.res.Configuration;
+import android.os.StrictMode;
+
+public class BlockApplication extends Application {
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+
+        // Debug builds log any disk access left on the main thread; database work belongs in ReadingRepository
+        if (BuildConfig.DEBUG) {
+            StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+                    .detectDiskReads()
+                    .detectDiskWrites()
+                    .penaltyLog()
+                    .build());
+            StrictMode.setVmPolicy(new StrictMode.VmPolicy.Builder()
+                    .detectLeakedSqlLiteObjects()
+                    .detectLeakedClosableObjects()
+                    .penaltyLog()
+                    .build());
+        }
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+        super.onConfigurationChanged(newConfig);
+        // The per-language contexts copied the old configuration
+        LocaleHelper.onConfigurationChanged();
+    }
+}
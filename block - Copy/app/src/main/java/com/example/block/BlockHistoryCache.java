@@ -0,0 +1,93 @@
+package com.example.block;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Pages of block history (getReadingsPage) for the blocks searched most recently, so opening the
+// same block again is served from memory. The billed amounts and used_count of every reading are
+// stored columns, so a page holds everything the history list shows. DatabaseHelper drops a block's
+// pages after each committed insert or delete of that block; other blocks keep theirs.
+//
+// A page read from the database is only kept if no write to its block was committed while it was
+// being read, which each block's generation counter tells.
+final class BlockHistoryCache {
+
+    static final int MAX_BLOCKS = 16;
+    static final int MAX_PAGES_PER_BLOCK = 8;
+
+    // Least recently searched block first
+    private final LinkedHashMap<String, Map<String, List<Reading>>> blocks =
+            new LinkedHashMap<String, Map<String, List<Reading>>>(MAX_BLOCKS, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Map<String, List<Reading>>> eldest) {
+                    return size() > MAX_BLOCKS;
+                }
+            };
+    private final long[] generations = new long[Blocks.LAST + 1];
+    private long hits;
+    private long misses;
+
+    // Cached page, or null if it has to be read
+    synchronized List<Reading> get(String houseNumber, long beforeReadAt, long beforeId, int limit) {
+        Map<String, List<Reading>> pages = blocks.get(houseNumber);
+        List<Reading> page = pages != null ? pages.get(key(beforeReadAt, beforeId, limit)) : null;
+        if (page != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return page;
+    }
+
+    // Take before reading a page from the database and pass to put
+    synchronized long generation(String houseNumber) {
+        int block = Blocks.number(houseNumber);
+        return block < 0 ? -1 : generations[block];
+    }
+
+    // Keep a page read at `generation` unless the block was written since; returns it read-only
+    synchronized List<Reading> put(String houseNumber, long generation, long beforeReadAt, long beforeId,
+                                   int limit, List<Reading> page) {
+        page = Collections.unmodifiableList(page);
+        if (generation < 0 || generation != generations[Blocks.number(houseNumber)]) {
+            return page;
+        }
+        Map<String, List<Reading>> pages = blocks.get(houseNumber);
+        if (pages == null) {
+            pages = new HashMap<>();
+            blocks.put(houseNumber, pages);
+        }
+        if (pages.size() < MAX_PAGES_PER_BLOCK) {
+            pages.put(key(beforeReadAt, beforeId, limit), page);
+        }
+        return page;
+    }
+
+    // A reading of the block was inserted or deleted
+    synchronized void invalidate(String houseNumber) {
+        int block = Blocks.number(houseNumber);
+        if (block >= 0) {
+            generations[block]++;
+            blocks.remove(houseNumber);
+        }
+    }
+
+    synchronized long hits() {
+        return hits;
+    }
+
+    synchronized long misses() {
+        return misses;
+    }
+
+    synchronized int size() {
+        return blocks.size();
+    }
+
+    private static String key(long beforeReadAt, long beforeId, int limit) {
+        return beforeReadAt + "/" + beforeId + "/" + limit;
+    }
+}
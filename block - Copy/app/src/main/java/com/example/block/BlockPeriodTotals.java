@@ -0,0 +1,209 @@
+package com.example.block;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import static com.example.block.DatabaseHelper.COLUMN_ADDITIONAL_PAYMENT;
+import static com.example.block.DatabaseHelper.COLUMN_BASE_CHARGE;
+import static com.example.block.DatabaseHelper.COLUMN_ETH_PERIOD;
+import static com.example.block.DatabaseHelper.COLUMN_FINAL_PAYMENT;
+import static com.example.block.DatabaseHelper.COLUMN_HOUSE_NUMBER;
+import static com.example.block.DatabaseHelper.COLUMN_ID;
+import static com.example.block.DatabaseHelper.COLUMN_USED_COUNT;
+import static com.example.block.DatabaseHelper.COLUMN_VAT_AMOUNT;
+import static com.example.block.DatabaseHelper.TABLE_NAME;
+
+// Per-block, per-Ethiopian-month sums of the data table, so period and year reports read at most
+// 66 rows per month however long the history is. Triggers on data keep it current inside the
+// transaction of every insert, delete and re-bill; rebuild() recomputes it from scratch.
+final class BlockPeriodTotals {
+
+    static final String TABLE = "block_period_totals";
+    static final String COLUMN_READINGS = "readings";
+
+    // Period reports walk this in house_number order; the primary key serves per-block ranges
+    static final String INDEX_PERIOD_HOUSE = "idx_block_period_totals_period_house";
+
+    private static final String TRIGGER_INSERT = "trg_data_totals_insert";
+    private static final String TRIGGER_DELETE = "trg_data_totals_delete";
+    private static final String TRIGGER_UPDATE = "trg_data_totals_update";
+
+    // Same units as the data columns they sum
+    static final String TABLE_CREATE =
+            "CREATE TABLE IF NOT EXISTS " + TABLE + " (" +
+                    COLUMN_HOUSE_NUMBER + " TEXT NOT NULL, " +
+                    COLUMN_ETH_PERIOD + " INTEGER NOT NULL, " +
+                    COLUMN_READINGS + " INTEGER NOT NULL, " +
+                    COLUMN_USED_COUNT + " INTEGER NOT NULL, " +
+                    COLUMN_BASE_CHARGE + " INTEGER NOT NULL, " +
+                    COLUMN_VAT_AMOUNT + " INTEGER NOT NULL, " +
+                    COLUMN_ADDITIONAL_PAYMENT + " INTEGER NOT NULL, " +
+                    COLUMN_FINAL_PAYMENT + " INTEGER NOT NULL, " +
+                    "PRIMARY KEY (" + COLUMN_HOUSE_NUMBER + ", " + COLUMN_ETH_PERIOD + "));";
+
+    static final String INDEX_PERIOD_HOUSE_CREATE =
+            "CREATE INDEX IF NOT EXISTS " + INDEX_PERIOD_HOUSE +
+                    " ON " + TABLE + " (" + COLUMN_ETH_PERIOD + ", " + COLUMN_HOUSE_NUMBER + ");";
+
+    private static final String COLUMNS =
+            COLUMN_HOUSE_NUMBER + ", " + COLUMN_ETH_PERIOD + ", " + COLUMN_READINGS + ", " +
+                    COLUMN_USED_COUNT + ", " + COLUMN_BASE_CHARGE + ", " + COLUMN_VAT_AMOUNT + ", " +
+                    COLUMN_ADDITIONAL_PAYMENT + ", " + COLUMN_FINAL_PAYMENT;
+
+    // Queries, columns in COLUMNS order
+
+    static final String SQL_PERIOD =
+            "SELECT " + COLUMNS + " FROM " + TABLE +
+                    " WHERE " + COLUMN_ETH_PERIOD + "=?" +
+                    " ORDER BY " + COLUMN_HOUSE_NUMBER;
+
+    static final String SQL_BLOCK_RANGE =
+            "SELECT " + COLUMNS + " FROM " + TABLE +
+                    " WHERE " + COLUMN_HOUSE_NUMBER + "=? AND " + COLUMN_ETH_PERIOD + " BETWEEN ? AND ?" +
+                    " ORDER BY " + COLUMN_ETH_PERIOD;
+
+    // Every block summed over a period range, e.g. a whole Ethiopian year; eth_period is the first
+    // period of the range. Listing the blocks 355/01 - 355/66 makes it one primary key range seek
+    // per block, already in house_number order; filtering on eth_period alone would read the period
+    // index and sort the groups in a temporary b-tree. Readings are only ever stored under these
+    // canonical house numbers (see Blocks.canonical and database version 10), so none are left out.
+    static final String SQL_RANGE_BY_BLOCK =
+            "SELECT " + COLUMN_HOUSE_NUMBER + ", MIN(" + COLUMN_ETH_PERIOD + "), SUM(" + COLUMN_READINGS + "), " +
+                    "SUM(" + COLUMN_USED_COUNT + "), SUM(" + COLUMN_BASE_CHARGE + "), SUM(" + COLUMN_VAT_AMOUNT + "), " +
+                    "SUM(" + COLUMN_ADDITIONAL_PAYMENT + "), SUM(" + COLUMN_FINAL_PAYMENT + ")" +
+                    " FROM " + TABLE +
+                    " WHERE " + COLUMN_HOUSE_NUMBER + " IN (" + houseNumbers() + ")" +
+                    " AND " + COLUMN_ETH_PERIOD + " BETWEEN ? AND ?" +
+                    " GROUP BY " + COLUMN_HOUSE_NUMBER +
+                    " ORDER BY " + COLUMN_HOUSE_NUMBER;
+
+    // Trigger bodies. A key row is created on first use and dropped when its last reading goes.
+
+    private static String addRow(String row) {
+        return "INSERT OR IGNORE INTO " + TABLE + " (" + COLUMNS + ")" +
+                " SELECT " + row + "." + COLUMN_HOUSE_NUMBER + ", " + row + "." + COLUMN_ETH_PERIOD +
+                ", 0, 0, 0, 0, 0, 0 WHERE " + row + "." + COLUMN_ETH_PERIOD + " IS NOT NULL; " +
+                applyRow(row, "+");
+    }
+
+    private static String removeRow(String row) {
+        return applyRow(row, "-") +
+                "DELETE FROM " + TABLE + " WHERE " + keyOf(row) + " AND " + COLUMN_READINGS + " <= 0; ";
+    }
+
+    private static String applyRow(String row, String sign) {
+        return "UPDATE " + TABLE + " SET " +
+                COLUMN_READINGS + " = " + COLUMN_READINGS + " " + sign + " 1, " +
+                sum(COLUMN_USED_COUNT, row, sign) + ", " +
+                sum(COLUMN_BASE_CHARGE, row, sign) + ", " +
+                sum(COLUMN_VAT_AMOUNT, row, sign) + ", " +
+                sum(COLUMN_ADDITIONAL_PAYMENT, row, sign) + ", " +
+                sum(COLUMN_FINAL_PAYMENT, row, sign) +
+                " WHERE " + keyOf(row) + "; ";
+    }
+
+    private static String sum(String column, String row, String sign) {
+        return column + " = " + column + " " + sign + " IFNULL(" + row + "." + column + ", 0)";
+    }
+
+    private static String keyOf(String row) {
+        return COLUMN_HOUSE_NUMBER + " = " + row + "." + COLUMN_HOUSE_NUMBER +
+                " AND " + COLUMN_ETH_PERIOD + " = " + row + "." + COLUMN_ETH_PERIOD;
+    }
+
+    // '355/01', '355/02', ... '355/66'
+    private static String houseNumbers() {
+        StringBuilder list = new StringBuilder();
+        for (int block = Blocks.FIRST; block <= Blocks.LAST; block++) {
+            if (list.length() > 0) list.append(", ");
+            list.append('\'').append(Blocks.houseNumber(block)).append('\'');
+        }
+        return list.toString();
+    }
+
+    private BlockPeriodTotals() {
+    }
+
+    static void createTriggers(SQLiteDatabase db) {
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + TRIGGER_INSERT +
+                " AFTER INSERT ON " + TABLE_NAME + " BEGIN " + addRow("NEW") + "END;");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + TRIGGER_DELETE +
+                " AFTER DELETE ON " + TABLE_NAME + " BEGIN " + removeRow("OLD") + "END;");
+        // Re-billing a reading after its neighbour was inserted or deleted lands here
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + TRIGGER_UPDATE +
+                " AFTER UPDATE OF " + COLUMN_HOUSE_NUMBER + ", " + COLUMN_ETH_PERIOD + ", " +
+                COLUMN_USED_COUNT + ", " + COLUMN_BASE_CHARGE + ", " + COLUMN_VAT_AMOUNT + ", " +
+                COLUMN_ADDITIONAL_PAYMENT + ", " + COLUMN_FINAL_PAYMENT +
+                " ON " + TABLE_NAME + " BEGIN " + removeRow("OLD") + addRow("NEW") + "END;");
+    }
+
+    // Table, index and triggers; the caller fills the table with rebuild() or addRange()
+    static void create(SQLiteDatabase db) {
+        db.execSQL(TABLE_CREATE);
+        db.execSQL(INDEX_PERIOD_HOUSE_CREATE);
+        createTriggers(db);
+    }
+
+    // Add the data rows with fromId < _id <= toId to the sums. Used to fill the table in chunks
+    // before the triggers exist.
+    static void addRange(SQLiteDatabase db, long fromId, long toId) {
+        SQLiteStatement insert = db.compileStatement(
+                "INSERT OR IGNORE INTO " + TABLE + " (" + COLUMNS + ") VALUES (?, ?, 0, 0, 0, 0, 0, 0)");
+        SQLiteStatement update = db.compileStatement(
+                "UPDATE " + TABLE + " SET " +
+                        COLUMN_READINGS + " = " + COLUMN_READINGS + " + ?, " +
+                        COLUMN_USED_COUNT + " = " + COLUMN_USED_COUNT + " + ?, " +
+                        COLUMN_BASE_CHARGE + " = " + COLUMN_BASE_CHARGE + " + ?, " +
+                        COLUMN_VAT_AMOUNT + " = " + COLUMN_VAT_AMOUNT + " + ?, " +
+                        COLUMN_ADDITIONAL_PAYMENT + " = " + COLUMN_ADDITIONAL_PAYMENT + " + ?, " +
+                        COLUMN_FINAL_PAYMENT + " = " + COLUMN_FINAL_PAYMENT + " + ?" +
+                        " WHERE " + COLUMN_HOUSE_NUMBER + " = ? AND " + COLUMN_ETH_PERIOD + " = ?");
+
+        Cursor c = db.rawQuery(
+                "SELECT " + COLUMN_HOUSE_NUMBER + ", " + COLUMN_ETH_PERIOD + ", COUNT(*), " +
+                        "IFNULL(SUM(" + COLUMN_USED_COUNT + "), 0), IFNULL(SUM(" + COLUMN_BASE_CHARGE + "), 0), " +
+                        "IFNULL(SUM(" + COLUMN_VAT_AMOUNT + "), 0), IFNULL(SUM(" + COLUMN_ADDITIONAL_PAYMENT + "), 0), " +
+                        "IFNULL(SUM(" + COLUMN_FINAL_PAYMENT + "), 0)" +
+                        " FROM " + TABLE_NAME +
+                        " WHERE " + COLUMN_ID + " > ? AND " + COLUMN_ID + " <= ?" +
+                        " AND " + COLUMN_HOUSE_NUMBER + " IS NOT NULL AND " + COLUMN_ETH_PERIOD + " IS NOT NULL" +
+                        " GROUP BY " + COLUMN_HOUSE_NUMBER + ", " + COLUMN_ETH_PERIOD,
+                new String[]{String.valueOf(fromId), String.valueOf(toId)});
+        while (c.moveToNext()) {
+            String houseNumber = c.getString(0);
+            long period = c.getLong(1);
+            insert.bindString(1, houseNumber);
+            insert.bindLong(2, period);
+            insert.executeInsert();
+
+            for (int i = 2; i <= 7; i++) {
+                update.bindLong(i - 1, c.getLong(i));
+            }
+            update.bindString(7, houseNumber);
+            update.bindLong(8, period);
+            update.executeUpdateDelete();
+        }
+        c.close();
+        insert.close();
+        update.close();
+    }
+
+    // Recompute every sum from the data table, for repair. One transaction, so readers never see
+    // a half-built table.
+    static void rebuild(SQLiteDatabase db) {
+        db.beginTransaction();
+        try {
+            db.execSQL("DELETE FROM " + TABLE);
+            addRange(db, Long.MIN_VALUE, Long.MAX_VALUE);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    static BlockTotal read(Cursor c) {
+        return new BlockTotal(c.getString(0), c.getInt(1), c.getInt(2),
+                c.getLong(3), c.getLong(4), c.getLong(5), c.getLong(6), c.getLong(7));
+    }
+}
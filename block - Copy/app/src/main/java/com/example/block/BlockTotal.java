@@ -0,0 +1,34 @@
+package com.example.block;
+
+// Sums of one block's readings over an Ethiopian billing period, or over a range of periods
+// starting at `period`. Amounts are fixed-point longs,
+// see FixedPoint for the scales.
+public class BlockTotal {
+
+    public final String houseNumber;
+    public final int period; // Ethiopian year * 100 + month
+    public final int readings;
+    public final long usedCount;    // 0.001 kWh
+    public final long baseCharge;   // santim
+    public final long vatAmount;    // santim
+    public final long additionalPayment; // santim
+    public final long finalPayment; // santim
+
+    public BlockTotal(String houseNumber,
+                      int period,
+                      int readings,
+                      long usedCount,
+                      long baseCharge,
+                      long vatAmount,
+                      long additionalPayment,
+                      long finalPayment) {
+        this.houseNumber = houseNumber;
+        this.period = period;
+        this.readings = readings;
+        this.usedCount = usedCount;
+        this.baseCharge = baseCharge;
+        this.vatAmount = vatAmount;
+        this.additionalPayment = additionalPayment;
+        this.finalPayment = finalPayment;
+    }
+}
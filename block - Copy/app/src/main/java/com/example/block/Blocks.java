@@ -0,0 +1,79 @@
+package com.example.block;
+
+import java.util.Locale;
+
+// The fixed block range 355/01 - 355/66 that readings are taken for
+public final class Blocks {
+
+    public static final String PREFIX = "355/";
+    public static final int FIRST = 1;
+    public static final int LAST = 66;
+
+    private Blocks() {
+    }
+
+    // Block number of a canonical "355/NN" house number, or -1 for anything else
+    public static int number(String houseNumber) {
+        if (houseNumber == null || houseNumber.length() != PREFIX.length() + 2 || !houseNumber.startsWith(PREFIX)) {
+            return -1;
+        }
+        int tens = houseNumber.charAt(PREFIX.length()) - '0';
+        int ones = houseNumber.charAt(PREFIX.length() + 1) - '0';
+        if (tens < 0 || tens > 9 || ones < 0 || ones > 9) {
+            return -1;
+        }
+        int number = tens * 10 + ones;
+        return number >= FIRST && number <= LAST ? number : -1;
+    }
+
+    // String resource describing why a typed block/house number is rejected, or 0 if it is accepted.
+    // Shared by the submit form and the CSV import, which store canonical(block).
+    public static int validationError(String block) {
+        if (block.isEmpty()) {
+            return R.string.required;
+        }
+        if (!block.startsWith(PREFIX)) {
+            return R.string.block_must_start;
+        }
+        int number = parseNumber(block);
+        if (number == -1) {
+            return R.string.invalid_number_format;
+        }
+        if (number < FIRST || number > LAST) {
+            return R.string.block_range_error;
+        }
+        return 0;
+    }
+
+    // The canonical "355/NN" form of an accepted house number ("355/7" and "355/007" are
+    // "355/07"), or null if validationError rejects it. Everything keyed by block (the caches,
+    // block_period_totals, the range reports) expects this form.
+    public static String canonical(String block) {
+        if (block == null || !block.startsWith(PREFIX)) {
+            return null;
+        }
+        int number = parseNumber(block);
+        return number >= FIRST && number <= LAST ? houseNumber(number) : null;
+    }
+
+    // Digits after the prefix as a number; -1 unless they are 1 - 9 plain digits
+    private static int parseNumber(String block) {
+        int length = block.length() - PREFIX.length();
+        if (length < 1 || length > 9) {
+            return -1;
+        }
+        int number = 0;
+        for (int i = PREFIX.length(); i < block.length(); i++) {
+            int digit = block.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            number = number * 10 + digit;
+        }
+        return number;
+    }
+
+    public static String houseNumber(int number) {
+        return PREFIX + String.format(Locale.US, "%02d", number);
+    }
+}
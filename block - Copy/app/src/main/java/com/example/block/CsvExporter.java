@@ -0,0 +1,142 @@
+package com.example.block;
+
+import android.database.Cursor;
+
+import com.example.billing.FixedPoint;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+// Writes the readings of a cursor as CSV (or TSV) for spreadsheets, streaming row by row through
+// one reused StringBuilder and a buffered UTF-8 writer, so memory stays constant however many rows
+// there are. The file starts with a byte order mark so spreadsheet apps read the Amharic headers
+// as UTF-8. Amounts are plain decimals in Birr / kWh without grouping.
+public class CsvExporter implements ReadingExporter {
+
+    public static final char COMMA = ',';
+    public static final char TAB = '\t';
+
+    static final int BUFFER_SIZE = 64 * 1024;
+    static final int PROGRESS_EVERY_ROWS = 1000;
+
+    static final String[] HEADERS = {
+            "የቤት ቁጥር", "የሀይል መጠን", "ፍጆታ", "ታርፍ", "ቫት (%)",
+            "ቫት", "ወርሃዊ መዋጮ", "ጠቅላላ ክፍያ", "ቀን", "ሰአት"
+    };
+
+    private final File exportDir;
+    private final String baseName;
+    private final char separator;
+
+    private volatile boolean cancelled;
+
+    public CsvExporter(File exportDir, String baseName, char separator) {
+        this.exportDir = exportDir;
+        this.baseName = baseName;
+        this.separator = separator;
+    }
+
+    @Override
+    public void cancel() {
+        cancelled = true;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public List<File> export(Cursor cursor, ProgressListener listener) throws IOException {
+        List<File> files = new ArrayList<>();
+        int totalRows = cursor.getCount();
+        if (totalRows == 0) {
+            return files;
+        }
+        if (!exportDir.exists()) exportDir.mkdirs();
+
+        File file = new File(exportDir, baseName + (separator == TAB ? ".tsv" : ".csv"));
+        DatabaseHelper.RowReader reader = new DatabaseHelper.RowReader(cursor);
+        StringBuilder line = new StringBuilder(BUFFER_SIZE);
+        int rowsWritten = 0;
+
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            line.append('\uFEFF');
+            for (int i = 0; i < HEADERS.length; i++) {
+                if (i > 0) line.append(separator);
+                appendText(line, HEADERS[i]);
+            }
+            line.append("\r\n");
+
+            while (cursor.moveToNext()) {
+                if (cancelled || Thread.currentThread().isInterrupted()) {
+                    throw new CancellationException("CSV export cancelled");
+                }
+                appendRow(line, reader.read());
+                rowsWritten++;
+
+                // Hand the writer a full buffer at a time rather than one short line per call
+                if (line.length() >= BUFFER_SIZE - 256) {
+                    out.append(line);
+                    line.setLength(0);
+                }
+                if (listener != null && rowsWritten % PROGRESS_EVERY_ROWS == 0) {
+                    listener.onProgress(rowsWritten, totalRows, 0);
+                }
+            }
+            out.append(line);
+        } catch (IOException | RuntimeException e) {
+            file.delete();
+            throw e;
+        }
+        if (listener != null) listener.onProgress(rowsWritten, totalRows, 0);
+        files.add(file);
+        return files;
+    }
+
+    private void appendRow(StringBuilder line, Reading reading) {
+        appendText(line, reading.houseNumber);
+        line.append(separator);
+        FixedPoint.append(line, reading.energyCount, FixedPoint.ENERGY_DECIMALS, 0).append(separator);
+        FixedPoint.append(line, reading.usedCount, FixedPoint.ENERGY_DECIMALS, 0).append(separator);
+        FixedPoint.append(line, reading.tarif, FixedPoint.TARIF_DECIMALS, 0).append(separator);
+        FixedPoint.append(line, reading.vat, FixedPoint.PERCENT_DECIMALS, 0).append(separator);
+        FixedPoint.append(line, reading.vatAmount, FixedPoint.MONEY_DECIMALS, FixedPoint.MONEY_DECIMALS).append(separator);
+        FixedPoint.append(line, reading.additionalPayment, FixedPoint.MONEY_DECIMALS, FixedPoint.MONEY_DECIMALS)
+                .append(separator);
+        FixedPoint.append(line, reading.finalPayment, FixedPoint.MONEY_DECIMALS, FixedPoint.MONEY_DECIMALS)
+                .append(separator);
+        appendText(line, reading.date);
+        line.append(separator);
+        appendText(line, reading.time);
+        line.append("\r\n");
+    }
+
+    // Quote a text field only when it contains the separator, a quote or a line break
+    private void appendText(StringBuilder line, String value) {
+        if (value == null) return;
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == separator || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            line.append(value);
+            return;
+        }
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') line.append('"');
+            line.append(c);
+        }
+        line.append('"');
+    }
+}
@@ -5,99 +5,538 @@ import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Locale;
+import android.database.sqlite.SQLiteStatement;
+
+import com.example.billing.BillingEngine;
+import com.example.billing.EthiopianDateConverter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TimeZone;
 
 public class DatabaseHelper extends SQLiteOpenHelper {
 
     // Database Info
     private static final String DATABASE_NAME = "property.db";
-    private static final int DATABASE_VERSION = 3;
+    static final int DATABASE_VERSION = 10;
 
     // Table Info
     public static final String TABLE_NAME = "data";
 
-    // Column Names
+    // Column Names (amounts are fixed-point integers, see FixedPoint)
     public static final String COLUMN_ID = "_id";
     public static final String COLUMN_HOUSE_NUMBER = "house_number";
-    public static final String COLUMN_ENERGY_COUNT = "energy_count";
-    public static final String COLUMN_VAT = "vat";
-    public static final String COLUMN_ADDITIONAL_PAYMENT = "additional_payment";
-    public static final String COLUMN_FINAL_PAYMENT = "final_payment";
-    public static final String COLUMN_TARIF = "tarif";
+    public static final String COLUMN_ENERGY_COUNT = "energy_count"; // 0.001 kWh
+    public static final String COLUMN_VAT = "vat"; // 0.01 %
+    public static final String COLUMN_ADDITIONAL_PAYMENT = "additional_payment"; // santim
+    public static final String COLUMN_FINAL_PAYMENT = "final_payment"; // santim
+    public static final String COLUMN_TARIF = "tarif"; // 0.0001 Birr per kWh
     public static final String COLUMN_DATE = "date";
     public static final String COLUMN_TIME = "time";
+    public static final String COLUMN_READ_AT = "read_at"; // epoch millis of date + time
+    public static final String COLUMN_USED_COUNT = "used_count"; // energy since the block's previous reading
+    public static final String COLUMN_BASE_CHARGE = "base_charge"; // used_count * tarif
+    public static final String COLUMN_VAT_AMOUNT = "vat_amount"; // base_charge * vat / 100
+    public static final String COLUMN_ETH_PERIOD = "eth_period"; // Ethiopian year * 100 + month of read_at
+
+    // Index Names
+    static final String INDEX_READ_AT = "idx_data_read_at";
+    static final String INDEX_HOUSE_READ_AT = "idx_data_house_read_at";
+    static final String INDEX_PERIOD_READ_AT = "idx_data_period_read_at";
+    static final String INDEX_PERIOD_HOUSE = "idx_data_period_house";
 
     // Table Creation SQL
-    private static final String TABLE_CREATE =
-            "CREATE TABLE " + TABLE_NAME + " (" +
-                    COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
-                    COLUMN_HOUSE_NUMBER + " TEXT, " +
-                    COLUMN_ENERGY_COUNT + " REAL, " +
-                    COLUMN_VAT + " REAL, " +
-                    COLUMN_ADDITIONAL_PAYMENT + " REAL, " +
-                    COLUMN_FINAL_PAYMENT + " REAL, " +
-                    COLUMN_TARIF + " REAL, " +
-                    COLUMN_DATE + " TEXT, " +
-                    COLUMN_TIME + " TEXT);";
-
-    public DatabaseHelper(Context context) {
-        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    private static final String TABLE_CREATE = tableCreate(TABLE_NAME);
+
+    // Always the current schema. Also used by the version 7 migration to build the fixed-point
+    // copy of the table, so later migration steps must cope with that copy already having their columns.
+    static String tableCreate(String tableName) {
+        return "CREATE TABLE " + tableName + " (" +
+                COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                COLUMN_HOUSE_NUMBER + " TEXT, " +
+                COLUMN_ENERGY_COUNT + " INTEGER, " +
+                COLUMN_VAT + " INTEGER, " +
+                COLUMN_ADDITIONAL_PAYMENT + " INTEGER, " +
+                COLUMN_FINAL_PAYMENT + " INTEGER, " +
+                COLUMN_TARIF + " INTEGER, " +
+                COLUMN_DATE + " TEXT, " +
+                COLUMN_TIME + " TEXT, " +
+                COLUMN_READ_AT + " INTEGER, " +
+                COLUMN_USED_COUNT + " INTEGER, " +
+                COLUMN_BASE_CHARGE + " INTEGER, " +
+                COLUMN_VAT_AMOUNT + " INTEGER, " +
+                COLUMN_ETH_PERIOD + " INTEGER);";
+    }
+
+    static final String INDEX_READ_AT_CREATE =
+            "CREATE INDEX IF NOT EXISTS " + INDEX_READ_AT +
+                    " ON " + TABLE_NAME + " (" + COLUMN_READ_AT + ");";
+
+    // Serves every per-block lookup: equality on house_number, then read_at order
+    // (the implicit trailing _id breaks ties)
+    static final String INDEX_HOUSE_READ_AT_CREATE =
+            "CREATE INDEX IF NOT EXISTS " + INDEX_HOUSE_READ_AT +
+                    " ON " + TABLE_NAME + " (" + COLUMN_HOUSE_NUMBER + ", " + COLUMN_READ_AT + ");";
+
+    // Billing period lookups: all readings of a period in read_at order, and per-block grouping
+    static final String INDEX_PERIOD_READ_AT_CREATE =
+            "CREATE INDEX IF NOT EXISTS " + INDEX_PERIOD_READ_AT +
+                    " ON " + TABLE_NAME + " (" + COLUMN_ETH_PERIOD + ", " + COLUMN_READ_AT + ");";
+
+    static final String INDEX_PERIOD_HOUSE_CREATE =
+            "CREATE INDEX IF NOT EXISTS " + INDEX_PERIOD_HOUSE +
+                    " ON " + TABLE_NAME + " (" + COLUMN_ETH_PERIOD + ", " + COLUMN_HOUSE_NUMBER + ");";
+
+    // Queries (package-private so their query plans can be checked in tests)
+    static final String SQL_RECENT_COUNT =
+            "SELECT " + COLUMN_ENERGY_COUNT +
+                    " FROM " + TABLE_NAME +
+                    " WHERE " + COLUMN_HOUSE_NUMBER + "=?" +
+                    " ORDER BY " + COLUMN_READ_AT + " DESC, " + COLUMN_ID + " DESC LIMIT 1";
+
+    static final String SQL_ALL_DATA =
+            "SELECT * FROM " + TABLE_NAME +
+                    " ORDER BY " + COLUMN_READ_AT + " DESC, " + COLUMN_ID + " DESC";
+
+    static final String SQL_RECORDS_BY_BLOCK =
+            "SELECT * FROM " + TABLE_NAME +
+                    " WHERE " + COLUMN_HOUSE_NUMBER + "=?" +
+                    " ORDER BY " + COLUMN_READ_AT + " DESC, " + COLUMN_ID + " DESC";
+
+    static final String SQL_RECORDS_BETWEEN =
+            "SELECT * FROM " + TABLE_NAME +
+                    " WHERE " + COLUMN_READ_AT + " >= ? AND " + COLUMN_READ_AT + " < ?" +
+                    " ORDER BY " + COLUMN_READ_AT + " DESC, " + COLUMN_ID + " DESC";
+
+    static final String SQL_RECORDS_BY_BLOCK_BETWEEN =
+            "SELECT * FROM " + TABLE_NAME +
+                    " WHERE " + COLUMN_HOUSE_NUMBER + "=? AND " +
+                    COLUMN_READ_AT + " >= ? AND " + COLUMN_READ_AT + " < ?" +
+                    " ORDER BY " + COLUMN_READ_AT + " DESC, " + COLUMN_ID + " DESC";
+
+    // Date/time text converted the same way as the read_at back-fill, so the lookup is a range
+    static final String SQL_PREVIOUS_ENERGY_AT =
+            "SELECT " + COLUMN_ENERGY_COUNT +
+                    " FROM " + TABLE_NAME +
+                    " WHERE " + COLUMN_HOUSE_NUMBER + "=? AND " +
+                    COLUMN_READ_AT + " < 1000 * strftime('%s', ? || ' ' || ?, 'utc')" +
+                    " ORDER BY " + COLUMN_READ_AT + " DESC, " + COLUMN_ID + " DESC LIMIT 1";
+
+    // Reading ordered just before / after (read_at, _id) within a block
+    static final String SQL_PREVIOUS_ENERGY_BEFORE =
+            "SELECT " + COLUMN_ENERGY_COUNT +
+                    " FROM " + TABLE_NAME +
+                    " WHERE " + COLUMN_HOUSE_NUMBER + "=? AND " + COLUMN_READ_AT + " <= ?" +
+                    " AND (" + COLUMN_READ_AT + " < ? OR " + COLUMN_ID + " < ?)" +
+                    " ORDER BY " + COLUMN_READ_AT + " DESC, " + COLUMN_ID + " DESC LIMIT 1";
+
+    static final String SQL_NEXT_READING_AFTER =
+            "SELECT " + COLUMN_ID + ", " + COLUMN_ENERGY_COUNT + ", " + COLUMN_TARIF + ", " +
+                    COLUMN_VAT + ", " + COLUMN_ADDITIONAL_PAYMENT +
+                    " FROM " + TABLE_NAME +
+                    " WHERE " + COLUMN_HOUSE_NUMBER + "=? AND " + COLUMN_READ_AT + " >= ?" +
+                    " AND (" + COLUMN_READ_AT + " > ? OR " + COLUMN_ID + " > ?)" +
+                    " ORDER BY " + COLUMN_READ_AT + " ASC, " + COLUMN_ID + " ASC LIMIT 1";
+
+    static final String SQL_RECORDS_BY_BLOCK_PAGE =
+            "SELECT * FROM " + TABLE_NAME +
+                    " WHERE " + COLUMN_HOUSE_NUMBER + "=? AND " + COLUMN_READ_AT + " <= ?" +
+                    " AND (" + COLUMN_READ_AT + " < ? OR " + COLUMN_ID + " < ?)" +
+                    " ORDER BY " + COLUMN_READ_AT + " DESC, " + COLUMN_ID + " DESC";
+
+    static final String SQL_LATEST_READING =
+            "SELECT " + COLUMN_ID + ", " + COLUMN_ENERGY_COUNT + ", " + COLUMN_READ_AT +
+                    " FROM " + TABLE_NAME +
+                    " WHERE " + COLUMN_HOUSE_NUMBER + "=?" +
+                    " ORDER BY " + COLUMN_READ_AT + " DESC, " + COLUMN_ID + " DESC LIMIT 1";
+
+    // Latest reading of each block 355/01 - 355/66 that has one: one index seek per block number
+    static final String SQL_LATEST_PER_BLOCK =
+            "WITH RECURSIVE block_numbers(n) AS (SELECT " + Blocks.FIRST +
+                    " UNION ALL SELECT n + 1 FROM block_numbers WHERE n < " + Blocks.LAST + ")" +
+                    " SELECT n, d." + COLUMN_ID + ", d." + COLUMN_ENERGY_COUNT + ", d." + COLUMN_READ_AT +
+                    " FROM block_numbers JOIN " + TABLE_NAME + " d ON d." + COLUMN_ID + " = (" +
+                    "SELECT " + COLUMN_ID + " FROM " + TABLE_NAME +
+                    " WHERE " + COLUMN_HOUSE_NUMBER + " = '" + Blocks.PREFIX + "' || printf('%02d', n)" +
+                    " ORDER BY " + COLUMN_READ_AT + " DESC, " + COLUMN_ID + " DESC LIMIT 1)";
+
+    static final String SQL_RECORDS_IN_PERIOD =
+            "SELECT * FROM " + TABLE_NAME +
+                    " WHERE " + COLUMN_ETH_PERIOD + "=?" +
+                    " ORDER BY " + COLUMN_READ_AT + " DESC, " + COLUMN_ID + " DESC";
+
+    // Rows added after an export watermark, in the order they were entered. Both walk the primary
+    // key range only, so the cost follows the number of new rows; the unary + keeps SQLite from
+    // choosing a house_number index and sorting instead.
+    static final String SQL_RECORDS_AFTER_ID =
+            "SELECT * FROM " + TABLE_NAME +
+                    " WHERE " + COLUMN_ID + " > ? AND " + COLUMN_ID + " <= ?" +
+                    " ORDER BY " + COLUMN_ID;
+
+    static final String SQL_RECORDS_BY_BLOCK_AFTER_ID =
+            "SELECT * FROM " + TABLE_NAME +
+                    " WHERE +" + COLUMN_HOUSE_NUMBER + "=? AND " + COLUMN_ID + " > ? AND " + COLUMN_ID + " <= ?" +
+                    " ORDER BY " + COLUMN_ID;
+
+    static final String SQL_MAX_ID =
+            "SELECT IFNULL(MAX(" + COLUMN_ID + "), 0) FROM " + TABLE_NAME;
+
+    static final String SQL_READING_ROW =
+            "SELECT * FROM " + TABLE_NAME + " WHERE " + COLUMN_ID + "=?";
+
+    static final String SQL_READING_BY_ID =
+            "SELECT " + COLUMN_HOUSE_NUMBER + ", " + COLUMN_READ_AT +
+                    " FROM " + TABLE_NAME + " WHERE " + COLUMN_ID + "=?";
+
+    // Column order of a NewReading bound to the batch insert
+    static final String SQL_INSERT_READING =
+            "INSERT INTO " + TABLE_NAME + " (" +
+                    COLUMN_HOUSE_NUMBER + ", " + COLUMN_ENERGY_COUNT + ", " + COLUMN_VAT + ", " +
+                    COLUMN_ADDITIONAL_PAYMENT + ", " + COLUMN_TARIF + ", " + COLUMN_DATE + ", " + COLUMN_TIME + ", " +
+                    COLUMN_READ_AT + ", " + COLUMN_ETH_PERIOD + ", " + COLUMN_USED_COUNT + ", " +
+                    COLUMN_BASE_CHARGE + ", " + COLUMN_VAT_AMOUNT + ", " + COLUMN_FINAL_PAYMENT + ")" +
+                    " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    // One reading of a batch insert. Amounts are fixed-point like insertData's arguments; id and
+    // finalPayment are filled in by insertReadings.
+    static final class NewReading {
+        String houseNumber;
+        long energyCount;
+        long vat;
+        long additionalPayment;
+        long tarif;
+        String date;
+        String time;
+        long readAt;
+
+        long id;
+        long finalPayment;
+    }
+
+    // One write of a group commit (see applyWrites): an insert of `reading`, or when it is null a
+    // delete of deleteId. deleted is filled in for deletes.
+    static final class Write {
+        NewReading reading;
+        long deleteId;
+        boolean deleted;
+    }
+
+    private static DatabaseHelper instance;
+
+    private final LatestReadingCache latest = new LatestReadingCache();
+    private final BlockHistoryCache history = new BlockHistoryCache();
+
+    // One helper, and so one open connection pool, for the whole process
+    public static synchronized DatabaseHelper getInstance(Context context) {
+        if (instance == null) {
+            instance = new DatabaseHelper(context.getApplicationContext(), DATABASE_NAME);
+        }
+        return instance;
+    }
+
+    // Tests pass their own database name
+    DatabaseHelper(Context context, String name) {
+        super(context, name, null, DATABASE_VERSION);
+        // Write-ahead logging lets history/export reads run alongside new readings being written
+        setWriteAheadLoggingEnabled(true);
     }
 
     @Override
     public void onCreate(SQLiteDatabase db) {
         db.execSQL(TABLE_CREATE);
+        createIndexes(db);
+        BlockPeriodTotals.create(db);
+        db.execSQL(DatabaseMigrations.TABLE_BACKFILL_CREATE);
+    }
+
+    // Every index of the current schema; also run when a migration rebuilds the table
+    static void createIndexes(SQLiteDatabase db) {
+        db.execSQL(INDEX_READ_AT_CREATE);
+        db.execSQL(INDEX_HOUSE_READ_AT_CREATE);
+        db.execSQL(INDEX_PERIOD_READ_AT_CREATE);
+        db.execSQL(INDEX_PERIOD_HOUSE_CREATE);
     }
 
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_NAME);
-        onCreate(db);
+        if (oldVersion < DatabaseMigrations.MIN_UPGRADABLE_VERSION) {
+            db.execSQL("DROP TABLE IF EXISTS " + TABLE_NAME);
+            onCreate(db);
+            return;
+        }
+        DatabaseMigrations.migrate(db, oldVersion, newVersion);
+    }
+
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        super.onOpen(db);
+        // Finish any row back-fills left by an upgrade, chunk by chunk
+        if (!db.isReadOnly()) {
+            DatabaseMigrations.runPendingBackfills(db);
+            latest.warm(db);
+        }
+    }
+
+    // Ethiopian billing period (year * 100 + month) of a reading, by its local date
+    static int ethiopianPeriod(long readAt) {
+        return EthiopianDateConverter.period(EthiopianDateConverter.fromEpochMillis(readAt, TimeZone.getDefault()));
+    }
+
+    // Period the current local date falls in
+    public static int currentEthiopianPeriod() {
+        return ethiopianPeriod(System.currentTimeMillis());
+    }
+
+    // Energy count of the block's last reading ordered before (readAt, id), 0 if there is none
+    static long previousEnergy(SQLiteDatabase db, String houseNumber, long readAt, long id) {
+        long previous = 0;
+        Cursor c = db.rawQuery(SQL_PREVIOUS_ENERGY_BEFORE,
+                new String[]{houseNumber, String.valueOf(readAt), String.valueOf(readAt), String.valueOf(id)});
+        if (c.moveToFirst()) {
+            previous = c.getLong(0);
+        }
+        c.close();
+        return previous;
+    }
+
+    // Blocks.canonical form of a block's house number; anything else is stored as given
+    static String canonicalHouseNumber(String houseNumber) {
+        String canonical = Blocks.canonical(houseNumber);
+        return canonical != null ? canonical : houseNumber;
+    }
+
+    // Re-bill the block's reading ordered just after (readAt, id), if there is one, against
+    // previousEnergy. Called when the reading before it was inserted or deleted.
+    static void rebillNext(SQLiteDatabase db, String houseNumber, long readAt, long id, long previousEnergy) {
+        String at = String.valueOf(readAt);
+        Cursor next = db.rawQuery(SQL_NEXT_READING_AFTER,
+                new String[]{houseNumber, at, at, String.valueOf(id)});
+        if (next.moveToFirst()) {
+            rebill(db, next.getLong(0), next.getLong(1), previousEnergy,
+                    next.getLong(2), next.getLong(3), next.getLong(4));
+        }
+        next.close();
     }
 
-    // Insert a new row
-    public void insertData(String houseNumber,
-                           float energyCount,
-                           float vat,
-                           float additionalPayment,
-                           float finalPayment,
-                           float tarif,
+    // Store a reading's used_count, base_charge, vat_amount and final_payment against previousEnergy
+    static void rebill(SQLiteDatabase db, long id, long energyCount, long previousEnergy,
+                       long tarif, long vat, long additionalPayment) {
+        ContentValues values = new ContentValues();
+        putDerivedValues(values, energyCount, previousEnergy, tarif, vat, additionalPayment);
+        db.update(TABLE_NAME, values, COLUMN_ID + "=?", new String[]{String.valueOf(id)});
+    }
+
+    // Fill in used_count, base_charge, vat_amount and final_payment from the previous reading
+    private static void putDerivedValues(ContentValues values,
+                                         long energyCount,
+                                         long previousEnergy,
+                                         long tarif,
+                                         long vat,
+                                         long additionalPayment) {
+        BillingEngine.Bill bill = BillingEngine.bill(energyCount, previousEnergy, tarif, vat, additionalPayment,
+                new BillingEngine.Bill());
+
+        values.put(COLUMN_USED_COUNT, bill.usedCount);
+        values.put(COLUMN_BASE_CHARGE, bill.baseCharge);
+        values.put(COLUMN_VAT_AMOUNT, bill.vatAmount);
+        values.put(COLUMN_FINAL_PAYMENT, bill.finalPayment);
+    }
+
+    // Insert a new row, billing it against the block's previous reading. A back-dated reading also
+    // re-bills the one after it. Amounts are fixed-point (see FixedPoint). Returns the final payment
+    // that was stored, in santim.
+    public long insertData(String houseNumber,
+                           long energyCount,
+                           long vat,
+                           long additionalPayment,
+                           long tarif,
                            String date,
-                           String time) {
+                           String time,
+                           long readAt) {
 
         SQLiteDatabase db = this.getWritableDatabase();
         ContentValues values = new ContentValues();
 
+        houseNumber = canonicalHouseNumber(houseNumber);
         values.put(COLUMN_HOUSE_NUMBER, houseNumber);
         values.put(COLUMN_ENERGY_COUNT, energyCount);
         values.put(COLUMN_VAT, vat);
         values.put(COLUMN_ADDITIONAL_PAYMENT, additionalPayment);
-        values.put(COLUMN_FINAL_PAYMENT, finalPayment);
         values.put(COLUMN_TARIF, tarif);
         values.put(COLUMN_DATE, date);
         values.put(COLUMN_TIME, time);
+        values.put(COLUMN_READ_AT, readAt);
+        values.put(COLUMN_ETH_PERIOD, ethiopianPeriod(readAt));
+
+        long id;
+        db.beginTransaction();
+        try {
+            // Usually the new reading is the block's latest and its predecessor is cached
+            long previous = latest.energyBefore(houseNumber, readAt);
+            boolean newest = previous != LatestReadingCache.UNKNOWN;
+            if (!newest) {
+                previous = previousEnergy(db, houseNumber, readAt, Long.MAX_VALUE);
+            }
+            putDerivedValues(values, energyCount, previous, tarif, vat, additionalPayment);
+            id = db.insert(TABLE_NAME, null, values);
+            if (!newest && id != -1) {
+                rebillNext(db, houseNumber, readAt, id, energyCount);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        if (id != -1) {
+            latest.onInserted(houseNumber, id, energyCount, readAt);
+            history.invalidate(houseNumber);
+        }
+        return values.getAsLong(COLUMN_FINAL_PAYMENT);
+    }
+
+    // Insert readings[0 .. count) in one transaction through one compiled statement, billing each
+    // one the same way as insertData. Readings later in the batch are billed against earlier ones,
+    // and a back-dated reading re-bills the reading stored after it.
+    void insertReadings(NewReading[] readings, int count) {
+        insertRows(this.getWritableDatabase(), readings, count, null);
+        for (int i = 0; i < count; i++) {
+            NewReading r = readings[i];
+            latest.onInserted(r.houseNumber, r.id, r.energyCount, r.readAt);
+            history.invalidate(r.houseNumber);
+        }
+    }
+
+    // insertReadings without the cache updates. Inside a group commit, `written` marks the blocks the
+    // group has already written: the latest-reading cache does not know those writes yet, so their
+    // readings are billed from the database instead. Null outside a group.
+    private void insertRows(SQLiteDatabase db, NewReading[] readings, int count, boolean[] written) {
+        BillingEngine.Bill bill = new BillingEngine.Bill();
+        // Block's latest reading, when this batch wrote it; 0 ids for blocks where it has not
+        long[] batchIds = new long[Blocks.LAST + 1];
+        long[] batchEnergy = new long[Blocks.LAST + 1];
+        long[] batchReadAt = new long[Blocks.LAST + 1];
+
+        SQLiteStatement insert = db.compileStatement(SQL_INSERT_READING);
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < count; i++) {
+                NewReading r = readings[i];
+                r.houseNumber = canonicalHouseNumber(r.houseNumber);
+                int block = Blocks.number(r.houseNumber);
+
+                // Sorted imports take the first two branches and become the block's latest; anything
+                // out of order asks the database, which already sees this batch's rows
+                long previous = LatestReadingCache.UNKNOWN;
+                if (block >= 0 && batchIds[block] != 0) {
+                    if (r.readAt >= batchReadAt[block]) {
+                        previous = batchEnergy[block];
+                    }
+                } else if (written == null || block < 0 || !written[block]) {
+                    previous = latest.energyBefore(r.houseNumber, r.readAt);
+                }
+                boolean newest = previous != LatestReadingCache.UNKNOWN;
+                if (!newest) {
+                    previous = previousEnergy(db, r.houseNumber, r.readAt, Long.MAX_VALUE);
+                }
+                BillingEngine.bill(r.energyCount, previous, r.tarif, r.vat, r.additionalPayment, bill);
+
+                insert.bindString(1, r.houseNumber);
+                insert.bindLong(2, r.energyCount);
+                insert.bindLong(3, r.vat);
+                insert.bindLong(4, r.additionalPayment);
+                insert.bindLong(5, r.tarif);
+                insert.bindString(6, r.date);
+                insert.bindString(7, r.time);
+                insert.bindLong(8, r.readAt);
+                insert.bindLong(9, ethiopianPeriod(r.readAt));
+                insert.bindLong(10, bill.usedCount);
+                insert.bindLong(11, bill.baseCharge);
+                insert.bindLong(12, bill.vatAmount);
+                insert.bindLong(13, bill.finalPayment);
+                r.id = insert.executeInsert();
+                r.finalPayment = bill.finalPayment;
+
+                if (!newest) {
+                    rebillNext(db, r.houseNumber, r.readAt, r.id, r.energyCount);
+                } else if (block >= 0) {
+                    batchIds[block] = r.id;
+                    batchEnergy[block] = r.energyCount;
+                    batchReadAt[block] = r.readAt;
+                }
+                if (written != null && block >= 0) {
+                    written[block] = true;
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            insert.close();
+        }
+    }
 
-        db.insert(TABLE_NAME, null, values);
-        db.close();
+    // Apply writes[0 .. count) in order in one transaction (group commit): runs of inserts through
+    // insertRows, deletes through delete, each nested in the group's transaction. The latest-reading
+    // cache is only updated once the group has committed, so no other thread sees a reading that
+    // could still be rolled back. Their block history is dropped again once the group has ended, as
+    // a search during the group could have cached what was there before it.
+    void applyWrites(Write[] writes, int count) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        NewReading[] run = new NewReading[count];
+        String[] deletedFrom = new String[count];
+        boolean[] written = new boolean[Blocks.LAST + 1];
+        boolean committed = false;
+        db.beginTransaction();
+        try {
+            int i = 0;
+            while (i < count) {
+                if (writes[i].reading == null) {
+                    deletedFrom[i] = delete(db, writes[i].deleteId);
+                    writes[i].deleted = deletedFrom[i] != null;
+                    int block = Blocks.number(deletedFrom[i]);
+                    if (block >= 0) {
+                        written[block] = true;
+                    }
+                    i++;
+                    continue;
+                }
+                int n = 0;
+                while (i < count && writes[i].reading != null) {
+                    run[n++] = writes[i++].reading;
+                }
+                insertRows(db, run, n, written);
+            }
+            db.setTransactionSuccessful();
+            committed = true;
+        } finally {
+            db.endTransaction();
+            if (committed) {
+                for (int i = 0; i < count; i++) {
+                    NewReading r = writes[i].reading;
+                    if (r != null) {
+                        latest.onInserted(r.houseNumber, r.id, r.energyCount, r.readAt);
+                    } else if (deletedFrom[i] != null) {
+                        onDeleted(db, deletedFrom[i], writes[i].deleteId);
+                    }
+                }
+            }
+            for (int i = 0; i < count; i++) {
+                history.invalidate(writes[i].reading != null ? writes[i].reading.houseNumber : deletedFrom[i]);
+            }
+        }
     }
 
-    // Get most recent count for a block
-    public float getRecentCount(String houseNumber) {
+    // Get most recent count for a block, in 0.001 kWh
+    public long getRecentCount(String houseNumber) {
         SQLiteDatabase db = this.getReadableDatabase();
+        long cached = latest.latestEnergy(houseNumber);
+        if (cached != LatestReadingCache.UNKNOWN) {
+            return cached;
+        }
 
-        Cursor cursor = db.rawQuery(
-                "SELECT " + COLUMN_ENERGY_COUNT +
-                        " FROM " + TABLE_NAME +
-                        " WHERE " + COLUMN_HOUSE_NUMBER + "=? " +
-                        " ORDER BY " + COLUMN_DATE + " DESC, " +
-                        COLUMN_TIME + " DESC LIMIT 1",
-                new String[]{houseNumber});
+        Cursor cursor = db.rawQuery(SQL_RECENT_COUNT, new String[]{houseNumber});
 
-        float count = 0;
+        long count = 0;
         if (cursor.moveToFirst()) {
-            count = cursor.getFloat(0);
+            count = cursor.getLong(0);
         }
 
         cursor.close();
@@ -107,109 +546,286 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     // Get all records
     public Cursor getAllData() {
         SQLiteDatabase db = this.getReadableDatabase();
-        return db.rawQuery(
-                "SELECT * FROM " + TABLE_NAME +
-                        " ORDER BY " + COLUMN_DATE + " DESC, " +
-                        COLUMN_TIME + " DESC",
-                null
-        );
+        return db.rawQuery(SQL_ALL_DATA, null);
     }
 
     // Get records filtered by block/house number
     public Cursor getRecordsByBlock(String houseNumber) {
         SQLiteDatabase db = this.getReadableDatabase();
-        return db.rawQuery(
-                "SELECT * FROM " + TABLE_NAME +
-                        " WHERE " + COLUMN_HOUSE_NUMBER + "=? " +
-                        " ORDER BY " + COLUMN_DATE + " DESC, " +
-                        COLUMN_TIME + " DESC",
-                new String[]{houseNumber});
+        return db.rawQuery(SQL_RECORDS_BY_BLOCK, new String[]{houseNumber});
     }
 
-    // Delete a row by ID
+    // Delete a row by ID and re-bill the block's following reading against the one before it
     public boolean deleteRow(long id) {
         SQLiteDatabase db = this.getWritableDatabase();
-        int deleted = db.delete(TABLE_NAME, COLUMN_ID + "=?", new String[]{String.valueOf(id)});
-        return deleted > 0;
+        String houseNumber = delete(db, id);
+        if (houseNumber == null) {
+            return false;
+        }
+        onDeleted(db, houseNumber, id);
+        history.invalidate(houseNumber);
+        return true;
     }
 
-    // Get records filtered by date range (last X hours)
+    // deleteRow without the cache updates; returns the deleted reading's block, or null if there
+    // was no such reading
+    private String delete(SQLiteDatabase db, long id) {
+        String houseNumber;
+        db.beginTransaction();
+        try {
+            Cursor row = db.rawQuery(SQL_READING_BY_ID, new String[]{String.valueOf(id)});
+            if (!row.moveToFirst()) {
+                row.close();
+                // Nothing changed; marked successful so a group commit around it is not rolled back
+                db.setTransactionSuccessful();
+                return null;
+            }
+            houseNumber = row.getString(0);
+            long deletedReadAt = row.getLong(1);
+            row.close();
+
+            db.delete(TABLE_NAME, COLUMN_ID + "=?", new String[]{String.valueOf(id)});
+            rebillNext(db, houseNumber, deletedReadAt, id, previousEnergy(db, houseNumber, deletedReadAt, id));
+
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return houseNumber;
+    }
+
+    // A committed delete of reading `id`: deleting the block's latest reading makes the one before
+    // it the latest
+    private void onDeleted(SQLiteDatabase db, String houseNumber, long id) {
+        if (latest.latestId(houseNumber) == id) {
+            latest.reload(db, houseNumber);
+        }
+    }
+
+    // Get records for a date filter, newest first: "day" / "week" / "year" are the last X hours and
+    // "month" is the billing month, the Ethiopian month today falls in (indexed eth_period lookup)
     public Cursor getRecordsByDateFilter(String filter) {
-        SQLiteDatabase db = this.getReadableDatabase();
+        if (filter.equals("month")) {
+            return getRecordsInPeriod(currentEthiopianPeriod());
+        }
+        return getRecordsBetween(getDateFilterStart(filter), Long.MAX_VALUE);
+    }
 
+    // Start of the "day" / "week" / "year" window, in epoch millis
+    public static long getDateFilterStart(String filter) {
         // Determine hours based on filter
-        long hours = 0;
+        long hours;
         switch (filter) {
             case "day": hours = 24; break;
             case "week": hours = 168; break;
-            case "month": hours = 730; break;
             case "year": hours = 8760; break;
+            default: throw new IllegalArgumentException("No hour window for filter " + filter);
         }
 
         long currentTime = System.currentTimeMillis();
-        long cutoffTime = currentTime - hours * 60L * 60L * 1000L;
-
-        Cursor allCursor = db.rawQuery(
-                "SELECT * FROM " + TABLE_NAME +
-                        " ORDER BY " + COLUMN_DATE + " DESC, " + COLUMN_TIME + " DESC",
-                null);
-
-        // Create a MatrixCursor to hold filtered rows
-        android.database.MatrixCursor filteredCursor = new android.database.MatrixCursor(
-                new String[]{COLUMN_ID, COLUMN_HOUSE_NUMBER, COLUMN_ENERGY_COUNT, COLUMN_VAT,
-                        COLUMN_ADDITIONAL_PAYMENT, COLUMN_FINAL_PAYMENT, COLUMN_TARIF, COLUMN_DATE, COLUMN_TIME}
-        );
-
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault());
-
-        while (allCursor.moveToNext()) {
-            String date = allCursor.getString(allCursor.getColumnIndex(COLUMN_DATE));
-            String time = allCursor.getString(allCursor.getColumnIndex(COLUMN_TIME));
-            String dateTime = date + " " + time;
-
-            try {
-                long recordTime = sdf.parse(dateTime).getTime();
-                if (recordTime >= cutoffTime) {
-                    Object[] row = new Object[]{
-                            allCursor.getInt(allCursor.getColumnIndex(COLUMN_ID)),
-                            allCursor.getString(allCursor.getColumnIndex(COLUMN_HOUSE_NUMBER)),
-                            allCursor.getDouble(allCursor.getColumnIndex(COLUMN_ENERGY_COUNT)),
-                            allCursor.getDouble(allCursor.getColumnIndex(COLUMN_VAT)),
-                            allCursor.getDouble(allCursor.getColumnIndex(COLUMN_ADDITIONAL_PAYMENT)),
-                            allCursor.getDouble(allCursor.getColumnIndex(COLUMN_FINAL_PAYMENT)),
-                            allCursor.getDouble(allCursor.getColumnIndex(COLUMN_TARIF)),
-                            date,
-                            time
-                    };
-                    filteredCursor.addRow(row);
-                }
-            } catch (ParseException e) {
-                e.printStackTrace();
-            }
-        }
+        return currentTime - hours * 60L * 60L * 1000L;
+    }
 
-        allCursor.close();
-        return filteredCursor;
+    // Get records with fromMillis <= read_at < toMillis, newest first (index range scan)
+    public Cursor getRecordsBetween(long fromMillis, long toMillis) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        return db.rawQuery(SQL_RECORDS_BETWEEN,
+                new String[]{String.valueOf(fromMillis), String.valueOf(toMillis)});
     }
 
     // --- NEW METHOD: Get previous energy based on date & time ---
-    public double getPreviousEnergy(String houseNumber, String currentDate, String currentTime) {
-        double previous = 0.0;
+    public long getPreviousEnergy(String houseNumber, String currentDate, String currentTime) {
+        long previous = 0;
         SQLiteDatabase db = this.getReadableDatabase();
 
-        Cursor c = db.rawQuery(
-                "SELECT " + COLUMN_ENERGY_COUNT +
-                        " FROM " + TABLE_NAME +
-                        " WHERE " + COLUMN_HOUSE_NUMBER + "=? AND " +
-                        "( " + COLUMN_DATE + " < ? OR (" + COLUMN_DATE + " = ? AND " + COLUMN_TIME + " < ?) ) " +
-                        " ORDER BY " + COLUMN_DATE + " DESC, " + COLUMN_TIME + " DESC LIMIT 1",
-                new String[]{houseNumber, currentDate, currentDate, currentTime}
-        );
+        Cursor c = db.rawQuery(SQL_PREVIOUS_ENERGY_AT,
+                new String[]{houseNumber, currentDate, currentTime});
 
         if (c.moveToFirst()) {
-            previous = c.getDouble(0);
+            previous = c.getLong(0);
         }
         c.close();
         return previous;
     }
+
+    // Get records with fromMillis <= read_at < toMillis (all blocks when houseNumber is null), newest first
+    public Cursor getRecords(String houseNumber, long fromMillis, long toMillis) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        return houseNumber != null
+                ? db.rawQuery(SQL_RECORDS_BY_BLOCK_BETWEEN,
+                        new String[]{houseNumber, String.valueOf(fromMillis), String.valueOf(toMillis)})
+                : db.rawQuery(SQL_RECORDS_BETWEEN,
+                        new String[]{String.valueOf(fromMillis), String.valueOf(toMillis)});
+    }
+
+    // Readings with afterId < _id <= upToId, optionally of one block, in _id order
+    public Cursor getRecordsAfterId(String houseNumber, long afterId, long upToId) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        return houseNumber != null
+                ? db.rawQuery(SQL_RECORDS_BY_BLOCK_AFTER_ID,
+                        new String[]{houseNumber, String.valueOf(afterId), String.valueOf(upToId)})
+                : db.rawQuery(SQL_RECORDS_AFTER_ID,
+                        new String[]{String.valueOf(afterId), String.valueOf(upToId)});
+    }
+
+    // Highest _id handed out so far, 0 for an empty table
+    public long getMaxId() {
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor c = db.rawQuery(SQL_MAX_ID, null);
+        long id = c.moveToFirst() ? c.getLong(0) : 0;
+        c.close();
+        return id;
+    }
+
+    // Same rows as getRecords, as Readings with their stored consumption and VAT figures
+    public List<Reading> getReadings(String houseNumber, long fromMillis, long toMillis) {
+        return toReadings(getRecords(houseNumber, fromMillis, toMillis));
+    }
+
+    // Readings of one Ethiopian billing period (see ethiopianPeriod), newest first
+    public Cursor getRecordsInPeriod(int period) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        return db.rawQuery(SQL_RECORDS_IN_PERIOD, new String[]{String.valueOf(period)});
+    }
+
+    public List<Reading> getReadingsInPeriod(int period) {
+        return toReadings(getRecordsInPeriod(period));
+    }
+
+    // Per-block totals of one Ethiopian billing period, by house number. Read from
+    // block_period_totals, so at most one row per block.
+    public List<BlockTotal> getBlockTotals(int period) {
+        return toBlockTotals(BlockPeriodTotals.SQL_PERIOD, String.valueOf(period));
+    }
+
+    // Per-block totals summed over the periods fromPeriod..toPeriod
+    public List<BlockTotal> getBlockTotals(int fromPeriod, int toPeriod) {
+        return toBlockTotals(BlockPeriodTotals.SQL_RANGE_BY_BLOCK, String.valueOf(fromPeriod), String.valueOf(toPeriod));
+    }
+
+    // Per-block totals of a whole Ethiopian year, Pagume included
+    public List<BlockTotal> getYearTotals(int ethiopianYear) {
+        return getBlockTotals(ethiopianYear * 100 + 1, ethiopianYear * 100 + EthiopianDateConverter.PAGUME);
+    }
+
+    // One block's monthly totals over fromPeriod..toPeriod, oldest first; months without readings are left out
+    public List<BlockTotal> getBlockHistory(String houseNumber, int fromPeriod, int toPeriod) {
+        return toBlockTotals(BlockPeriodTotals.SQL_BLOCK_RANGE,
+                houseNumber, String.valueOf(fromPeriod), String.valueOf(toPeriod));
+    }
+
+    // Recompute block_period_totals from the readings, for repair
+    public void rebuildBlockTotals() {
+        BlockPeriodTotals.rebuild(this.getWritableDatabase());
+    }
+
+    private List<BlockTotal> toBlockTotals(String sql, String... args) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor c = db.rawQuery(sql, args);
+        List<BlockTotal> totals = new ArrayList<>(c.getCount());
+        while (c.moveToNext()) {
+            totals.add(BlockPeriodTotals.read(c));
+        }
+        c.close();
+        return totals;
+    }
+
+    // Keyset page of a block's readings: the `limit` newest ones ordered before (beforeReadAt, beforeId).
+    // Pass Long.MAX_VALUE for both to get the first page.
+    public Cursor getRecordsByBlock(String houseNumber, long beforeReadAt, long beforeId, int limit) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        return db.rawQuery(SQL_RECORDS_BY_BLOCK_PAGE + " LIMIT " + limit,
+                new String[]{houseNumber, String.valueOf(beforeReadAt), String.valueOf(beforeReadAt),
+                        String.valueOf(beforeId)});
+    }
+
+    // Served from the block history cache when the block was searched recently; the list is read-only
+    public List<Reading> getReadingsPage(String houseNumber, long beforeReadAt, long beforeId, int limit) {
+        List<Reading> page = history.get(houseNumber, beforeReadAt, beforeId, limit);
+        if (page != null) {
+            return page;
+        }
+        long generation = history.generation(houseNumber);
+        page = toReadings(getRecordsByBlock(houseNumber, beforeReadAt, beforeId, limit));
+        return history.put(houseNumber, generation, beforeReadAt, beforeId, limit, page);
+    }
+
+    // Block history pages served from memory and read from the database, since the helper was opened
+    public long getHistoryCacheHits() {
+        return history.hits();
+    }
+
+    public long getHistoryCacheMisses() {
+        return history.misses();
+    }
+
+    // Get a single reading, or null if it no longer exists
+    public Reading getReading(long id) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        List<Reading> readings = toReadings(db.rawQuery(SQL_READING_ROW, new String[]{String.valueOf(id)}));
+        return readings.isEmpty() ? null : readings.get(0);
+    }
+
+    // Read every row of a SELECT * cursor into Readings and close it
+    private static List<Reading> toReadings(Cursor c) {
+        RowReader reader = new RowReader(c);
+        List<Reading> readings = new ArrayList<>(c.getCount());
+        while (c.moveToNext()) {
+            readings.add(reader.read());
+        }
+        c.close();
+        return readings;
+    }
+
+    // Turns the current row of a SELECT * cursor into a Reading, looking the columns up only once
+    static final class RowReader {
+        private final Cursor c;
+        private final int idIdx;
+        private final int houseIdx;
+        private final int energyIdx;
+        private final int vatIdx;
+        private final int additionalIdx;
+        private final int finalIdx;
+        private final int tarifIdx;
+        private final int dateIdx;
+        private final int timeIdx;
+        private final int readAtIdx;
+        private final int usedIdx;
+        private final int baseIdx;
+        private final int vatAmountIdx;
+
+        RowReader(Cursor c) {
+            this.c = c;
+            idIdx = c.getColumnIndexOrThrow(COLUMN_ID);
+            houseIdx = c.getColumnIndexOrThrow(COLUMN_HOUSE_NUMBER);
+            energyIdx = c.getColumnIndexOrThrow(COLUMN_ENERGY_COUNT);
+            vatIdx = c.getColumnIndexOrThrow(COLUMN_VAT);
+            additionalIdx = c.getColumnIndexOrThrow(COLUMN_ADDITIONAL_PAYMENT);
+            finalIdx = c.getColumnIndexOrThrow(COLUMN_FINAL_PAYMENT);
+            tarifIdx = c.getColumnIndexOrThrow(COLUMN_TARIF);
+            dateIdx = c.getColumnIndexOrThrow(COLUMN_DATE);
+            timeIdx = c.getColumnIndexOrThrow(COLUMN_TIME);
+            readAtIdx = c.getColumnIndexOrThrow(COLUMN_READ_AT);
+            usedIdx = c.getColumnIndexOrThrow(COLUMN_USED_COUNT);
+            baseIdx = c.getColumnIndexOrThrow(COLUMN_BASE_CHARGE);
+            vatAmountIdx = c.getColumnIndexOrThrow(COLUMN_VAT_AMOUNT);
+        }
+
+        Reading read() {
+            return new Reading(
+                    c.getLong(idIdx),
+                    c.getString(houseIdx),
+                    c.getLong(energyIdx),
+                    c.getLong(vatIdx),
+                    c.getLong(additionalIdx),
+                    c.getLong(finalIdx),
+                    c.getLong(tarifIdx),
+                    c.getString(dateIdx),
+                    c.getString(timeIdx),
+                    c.getLong(readAtIdx),
+                    c.getLong(usedIdx),
+                    c.getLong(baseIdx),
+                    c.getLong(vatAmountIdx));
+        }
+    }
 }
@@ -0,0 +1,421 @@
+package com.example.block;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import com.example.billing.EthiopianDateConverter;
+import com.example.billing.FixedPoint;
+
+import java.util.TimeZone;
+
+import static com.example.block.DatabaseHelper.COLUMN_ADDITIONAL_PAYMENT;
+import static com.example.block.DatabaseHelper.COLUMN_BASE_CHARGE;
+import static com.example.block.DatabaseHelper.COLUMN_DATE;
+import static com.example.block.DatabaseHelper.COLUMN_ENERGY_COUNT;
+import static com.example.block.DatabaseHelper.COLUMN_ETH_PERIOD;
+import static com.example.block.DatabaseHelper.COLUMN_FINAL_PAYMENT;
+import static com.example.block.DatabaseHelper.COLUMN_HOUSE_NUMBER;
+import static com.example.block.DatabaseHelper.COLUMN_ID;
+import static com.example.block.DatabaseHelper.COLUMN_READ_AT;
+import static com.example.block.DatabaseHelper.COLUMN_TARIF;
+import static com.example.block.DatabaseHelper.COLUMN_TIME;
+import static com.example.block.DatabaseHelper.COLUMN_USED_COUNT;
+import static com.example.block.DatabaseHelper.COLUMN_VAT;
+import static com.example.block.DatabaseHelper.COLUMN_VAT_AMOUNT;
+import static com.example.block.DatabaseHelper.TABLE_NAME;
+
+// Versioned schema steps for DatabaseHelper.onUpgrade.
+//
+// Each DATABASE_VERSION increment gets one step in applyStep(). Steps only change the schema,
+// because they run inside the single transaction SQLiteOpenHelper wraps around onUpgrade. Work
+// that touches every row is registered as a back-fill instead and run from onOpen in chunks of
+// CHUNK_SIZE rows, one transaction per chunk. The last processed _id is committed with each
+// chunk, so a back-fill interrupted by the app being killed resumes where it stopped. A back-fill
+// that needs a final schema change once every row is done does it in completeBackfill().
+final class DatabaseMigrations {
+
+    // Oldest version that can be upgraded in place; anything older is recreated
+    static final int MIN_UPGRADABLE_VERSION = 3;
+
+    static final int CHUNK_SIZE = 2000;
+
+    // Pending back-fills: one row per schema version, with the last _id already processed
+    static final String TABLE_BACKFILL = "migration_backfill";
+    private static final String COLUMN_VERSION = "version";
+    private static final String COLUMN_LAST_ID = "last_id";
+
+    // Version 7 copies the rows into this table as fixed-point integers, then swaps it in
+    static final String TABLE_FIXED_POINT = TABLE_NAME + "_v7";
+
+    static final String TABLE_BACKFILL_CREATE =
+            "CREATE TABLE IF NOT EXISTS " + TABLE_BACKFILL + " (" +
+                    COLUMN_VERSION + " INTEGER PRIMARY KEY, " +
+                    COLUMN_LAST_ID + " INTEGER NOT NULL);";
+
+    private DatabaseMigrations() {
+    }
+
+    // Apply every schema step in (fromVersion, toVersion]
+    static void migrate(SQLiteDatabase db, int fromVersion, int toVersion) {
+        db.execSQL(TABLE_BACKFILL_CREATE);
+        for (int version = fromVersion + 1; version <= toVersion; version++) {
+            applyStep(db, version);
+        }
+    }
+
+    private static void applyStep(SQLiteDatabase db, int version) {
+        switch (version) {
+            case 4:
+                // Epoch timestamp of the stored local date/time text
+                db.execSQL("ALTER TABLE " + TABLE_NAME + " ADD COLUMN " + COLUMN_READ_AT + " INTEGER");
+                db.execSQL(DatabaseHelper.INDEX_READ_AT_CREATE);
+                scheduleBackfill(db, version);
+                break;
+            case 5:
+                // Consumption and VAT billed against the block's previous reading
+                db.execSQL("ALTER TABLE " + TABLE_NAME + " ADD COLUMN " + COLUMN_USED_COUNT + " REAL");
+                db.execSQL("ALTER TABLE " + TABLE_NAME + " ADD COLUMN " + COLUMN_BASE_CHARGE + " REAL");
+                db.execSQL("ALTER TABLE " + TABLE_NAME + " ADD COLUMN " + COLUMN_VAT_AMOUNT + " REAL");
+                scheduleBackfill(db, version);
+                break;
+            case 6:
+                // Composite index behind every per-block lookup
+                db.execSQL(DatabaseHelper.INDEX_HOUSE_READ_AT_CREATE);
+                break;
+            case 7:
+                // REAL amounts become fixed-point INTEGER columns; SQLite cannot change a column's
+                // type in place, so the rows are copied into a new table and it replaces the old one
+                db.execSQL("DROP TABLE IF EXISTS " + TABLE_FIXED_POINT);
+                db.execSQL(DatabaseHelper.tableCreate(TABLE_FIXED_POINT));
+                scheduleBackfill(db, version);
+                break;
+            case 8:
+                // Ethiopian billing period of every reading, indexed for period reports. A pending
+                // version 7 copy created before this step needs the column too.
+                addColumnIfMissing(db, TABLE_NAME, COLUMN_ETH_PERIOD, "INTEGER");
+                if (tableExists(db, TABLE_FIXED_POINT)) {
+                    addColumnIfMissing(db, TABLE_FIXED_POINT, COLUMN_ETH_PERIOD, "INTEGER");
+                }
+                db.execSQL(DatabaseHelper.INDEX_PERIOD_READ_AT_CREATE);
+                db.execSQL(DatabaseHelper.INDEX_PERIOD_HOUSE_CREATE);
+                scheduleBackfill(db, version);
+                break;
+            case 9:
+                // Per-block monthly sums. The back-fill fills the table; its triggers are only
+                // added once it is complete, so rows are never counted twice.
+                db.execSQL(BlockPeriodTotals.TABLE_CREATE);
+                db.execSQL(BlockPeriodTotals.INDEX_PERIOD_HOUSE_CREATE);
+                scheduleBackfill(db, version);
+                break;
+            case 10:
+                // House numbers typed as "355/7" or "355/007" move to the canonical "355/07"
+                scheduleBackfill(db, version);
+                break;
+            default:
+                throw new IllegalStateException("No migration to database version " + version);
+        }
+    }
+
+    // Back-fill the rows with fromId < _id <= toId for the given schema version
+    private static void backfillChunk(SQLiteDatabase db, int version, long fromId, long toId) {
+        switch (version) {
+            case 4:
+                backfillReadAt(db, fromId, toId);
+                break;
+            case 5:
+                backfillDerivedValues(db, fromId, toId);
+                break;
+            case 7:
+                copyAsFixedPoint(db, fromId, toId);
+                break;
+            case 8:
+                backfillEthiopianPeriod(db, fromId, toId);
+                break;
+            case 9:
+                BlockPeriodTotals.addRange(db, fromId, toId);
+                break;
+            case 10:
+                canonicalizeHouseNumbers(db, fromId, toId);
+                break;
+            default:
+                throw new IllegalStateException("No back-fill for database version " + version);
+        }
+    }
+
+    // Runs in the same transaction that retires the back-fill, after its last chunk
+    private static void completeBackfill(SQLiteDatabase db, int version) {
+        if (version == 7) {
+            swapInFixedPointTable(db);
+        } else if (version == 9) {
+            BlockPeriodTotals.createTriggers(db);
+        }
+    }
+
+    private static void scheduleBackfill(SQLiteDatabase db, int version) {
+        db.execSQL("INSERT OR REPLACE INTO " + TABLE_BACKFILL +
+                " (" + COLUMN_VERSION + ", " + COLUMN_LAST_ID + ") VALUES (?, 0)", new Object[]{version});
+    }
+
+    // Run all pending back-fills to completion, oldest schema version first
+    static void runPendingBackfills(SQLiteDatabase db) {
+        runPendingBackfills(db, Integer.MAX_VALUE);
+    }
+
+    // Run at most maxChunks chunks; returns true when nothing is left pending
+    static boolean runPendingBackfills(SQLiteDatabase db, int maxChunks) {
+        int chunks = 0;
+        while (true) {
+            Cursor pending = db.rawQuery(
+                    "SELECT " + COLUMN_VERSION + ", " + COLUMN_LAST_ID + " FROM " + TABLE_BACKFILL +
+                            " ORDER BY " + COLUMN_VERSION + " LIMIT 1",
+                    null);
+            if (!pending.moveToFirst()) {
+                pending.close();
+                return true;
+            }
+            int version = pending.getInt(0);
+            long lastId = pending.getLong(1);
+            pending.close();
+
+            if (chunks++ >= maxChunks) {
+                return false;
+            }
+
+            db.beginTransaction();
+            try {
+                long chunkEnd = chunkEnd(db, lastId);
+                if (chunkEnd < 0) {
+                    completeBackfill(db, version);
+                    db.delete(TABLE_BACKFILL, COLUMN_VERSION + "=?", new String[]{String.valueOf(version)});
+                } else {
+                    backfillChunk(db, version, lastId, chunkEnd);
+                    db.execSQL("UPDATE " + TABLE_BACKFILL + " SET " + COLUMN_LAST_ID + "=? WHERE " +
+                            COLUMN_VERSION + "=?", new Object[]{chunkEnd, version});
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        }
+    }
+
+    // Largest _id among the next CHUNK_SIZE rows after afterId, or -1 when there are none
+    private static long chunkEnd(SQLiteDatabase db, long afterId) {
+        Cursor c = db.rawQuery(
+                "SELECT MAX(" + COLUMN_ID + ") FROM (SELECT " + COLUMN_ID + " FROM " + TABLE_NAME +
+                        " WHERE " + COLUMN_ID + " > ? ORDER BY " + COLUMN_ID + " LIMIT " + CHUNK_SIZE + ")",
+                new String[]{String.valueOf(afterId)});
+        long end = -1;
+        if (c.moveToFirst() && !c.isNull(0)) {
+            end = c.getLong(0);
+        }
+        c.close();
+        return end;
+    }
+
+    private static boolean tableExists(SQLiteDatabase db, String table) {
+        Cursor c = db.rawQuery("SELECT 1 FROM sqlite_master WHERE type='table' AND name=?", new String[]{table});
+        boolean exists = c.moveToFirst();
+        c.close();
+        return exists;
+    }
+
+    private static void addColumnIfMissing(SQLiteDatabase db, String table, String column, String type) {
+        Cursor c = db.rawQuery("PRAGMA table_info(" + table + ")", null);
+        int nameIndex = c.getColumnIndexOrThrow("name");
+        boolean found = false;
+        while (c.moveToNext()) {
+            if (column.equals(c.getString(nameIndex))) {
+                found = true;
+                break;
+            }
+        }
+        c.close();
+        if (!found) {
+            db.execSQL("ALTER TABLE " + table + " ADD COLUMN " + column + " " + type);
+        }
+    }
+
+    // Version 4: read_at from the local date/time text, midnight when only the date parses
+    private static void backfillReadAt(SQLiteDatabase db, long fromId, long toId) {
+        db.execSQL("UPDATE " + TABLE_NAME + " SET " + COLUMN_READ_AT + " = 1000 * COALESCE(" +
+                        "strftime('%s', " + COLUMN_DATE + " || ' ' || " + COLUMN_TIME + ", 'utc'), " +
+                        "strftime('%s', " + COLUMN_DATE + ", 'utc'), 0)" +
+                        " WHERE " + COLUMN_ID + " > ? AND " + COLUMN_ID + " <= ?",
+                new Object[]{fromId, toId});
+    }
+
+    // Version 5: used_count / base_charge / vat_amount against each row's previous reading.
+    // The previous reading is looked up per row, so chunks do not depend on each other.
+    // final_payment is left as it was billed.
+    private static void backfillDerivedValues(SQLiteDatabase db, long fromId, long toId) {
+        SQLiteStatement update = db.compileStatement(
+                "UPDATE " + TABLE_NAME + " SET " +
+                        COLUMN_USED_COUNT + "=?, " + COLUMN_BASE_CHARGE + "=?, " + COLUMN_VAT_AMOUNT + "=?" +
+                        " WHERE " + COLUMN_ID + "=?");
+
+        Cursor c = db.rawQuery(
+                "SELECT " + COLUMN_ID + ", " + COLUMN_HOUSE_NUMBER + ", " + COLUMN_ENERGY_COUNT + ", " +
+                        COLUMN_TARIF + ", " + COLUMN_VAT + ", " + COLUMN_READ_AT +
+                        " FROM " + TABLE_NAME +
+                        " WHERE " + COLUMN_ID + " > ? AND " + COLUMN_ID + " <= ?",
+                new String[]{String.valueOf(fromId), String.valueOf(toId)});
+        while (c.moveToNext()) {
+            long id = c.getLong(0);
+            double energy = c.getDouble(2);
+            double previous = previousEnergyReal(db, c.getString(1), c.getLong(5), id);
+
+            double usedCount = Math.max(0, energy - previous);
+            double baseCharge = usedCount * c.getDouble(3);
+            double vatAmount = (baseCharge * c.getDouble(4)) / 100.0;
+
+            update.bindDouble(1, usedCount);
+            update.bindDouble(2, baseCharge);
+            update.bindDouble(3, vatAmount);
+            update.bindLong(4, id);
+            update.executeUpdateDelete();
+        }
+        c.close();
+        update.close();
+    }
+
+    // Version 5 runs before the version 7 conversion, while amounts are still REAL
+    private static double previousEnergyReal(SQLiteDatabase db, String houseNumber, long readAt, long id) {
+        double previous = 0.0;
+        Cursor c = db.rawQuery(DatabaseHelper.SQL_PREVIOUS_ENERGY_BEFORE,
+                new String[]{houseNumber, String.valueOf(readAt), String.valueOf(readAt), String.valueOf(id)});
+        if (c.moveToFirst()) {
+            previous = c.getDouble(0);
+        }
+        c.close();
+        return previous;
+    }
+
+    // Version 7: copy a range of rows, rounding every REAL amount to its fixed-point scale
+    private static void copyAsFixedPoint(SQLiteDatabase db, long fromId, long toId) {
+        db.execSQL("INSERT INTO " + TABLE_FIXED_POINT + " (" +
+                        COLUMN_ID + ", " + COLUMN_HOUSE_NUMBER + ", " + COLUMN_ENERGY_COUNT + ", " +
+                        COLUMN_VAT + ", " + COLUMN_ADDITIONAL_PAYMENT + ", " + COLUMN_FINAL_PAYMENT + ", " +
+                        COLUMN_TARIF + ", " + COLUMN_DATE + ", " + COLUMN_TIME + ", " + COLUMN_READ_AT + ", " +
+                        COLUMN_USED_COUNT + ", " + COLUMN_BASE_CHARGE + ", " + COLUMN_VAT_AMOUNT + ")" +
+                        " SELECT " + COLUMN_ID + ", " + COLUMN_HOUSE_NUMBER + ", " +
+                        toFixed(COLUMN_ENERGY_COUNT, FixedPoint.ENERGY_DECIMALS) + ", " +
+                        toFixed(COLUMN_VAT, FixedPoint.PERCENT_DECIMALS) + ", " +
+                        toFixed(COLUMN_ADDITIONAL_PAYMENT, FixedPoint.MONEY_DECIMALS) + ", " +
+                        toFixed(COLUMN_FINAL_PAYMENT, FixedPoint.MONEY_DECIMALS) + ", " +
+                        toFixed(COLUMN_TARIF, FixedPoint.TARIF_DECIMALS) + ", " +
+                        COLUMN_DATE + ", " + COLUMN_TIME + ", " + COLUMN_READ_AT + ", " +
+                        toFixed(COLUMN_USED_COUNT, FixedPoint.ENERGY_DECIMALS) + ", " +
+                        toFixed(COLUMN_BASE_CHARGE, FixedPoint.MONEY_DECIMALS) + ", " +
+                        toFixed(COLUMN_VAT_AMOUNT, FixedPoint.MONEY_DECIMALS) +
+                        " FROM " + TABLE_NAME +
+                        " WHERE " + COLUMN_ID + " > ? AND " + COLUMN_ID + " <= ?",
+                new Object[]{fromId, toId});
+    }
+
+    // Version 8: eth_period from read_at. The chunk's timestamps are converted in one bulk call,
+    // which reuses the previous row's date while rows stay on the same day.
+    private static void backfillEthiopianPeriod(SQLiteDatabase db, long fromId, long toId) {
+        long[] ids = new long[CHUNK_SIZE];
+        long[] readAt = new long[CHUNK_SIZE];
+        int count = 0;
+        Cursor c = db.rawQuery(
+                "SELECT " + COLUMN_ID + ", " + COLUMN_READ_AT + " FROM " + TABLE_NAME +
+                        " WHERE " + COLUMN_ID + " > ? AND " + COLUMN_ID + " <= ? ORDER BY " + COLUMN_ID,
+                new String[]{String.valueOf(fromId), String.valueOf(toId)});
+        while (c.moveToNext() && count < CHUNK_SIZE) {
+            ids[count] = c.getLong(0);
+            readAt[count] = c.getLong(1);
+            count++;
+        }
+        c.close();
+
+        int[] dates = new int[count];
+        EthiopianDateConverter.fromEpochMillis(readAt, count, TimeZone.getDefault(), dates);
+
+        SQLiteStatement update = db.compileStatement(
+                "UPDATE " + TABLE_NAME + " SET " + COLUMN_ETH_PERIOD + "=? WHERE " + COLUMN_ID + "=?");
+        for (int i = 0; i < count; i++) {
+            update.bindLong(1, EthiopianDateConverter.period(dates[i]));
+            update.bindLong(2, ids[i]);
+            update.executeUpdateDelete();
+        }
+        update.close();
+    }
+
+    // Version 10: a reading stored under another spelling of its block moves to Blocks.canonical.
+    // Each move is a delete from the old spelling and an insert under the canonical one: the
+    // reading after it in the old spelling is re-billed, then the reading itself and the one after
+    // it under the canonical spelling. block_period_totals follows through its update trigger.
+    private static void canonicalizeHouseNumbers(SQLiteDatabase db, long fromId, long toId) {
+        long[] ids = new long[CHUNK_SIZE];
+        String[] houseNumbers = new String[CHUNK_SIZE];
+        long[] readAt = new long[CHUNK_SIZE];
+        long[] energy = new long[CHUNK_SIZE];
+        long[] tarif = new long[CHUNK_SIZE];
+        long[] vat = new long[CHUNK_SIZE];
+        long[] additional = new long[CHUNK_SIZE];
+        int count = 0;
+        Cursor c = db.rawQuery(
+                "SELECT " + COLUMN_ID + ", " + COLUMN_HOUSE_NUMBER + ", " + COLUMN_READ_AT + ", " +
+                        COLUMN_ENERGY_COUNT + ", " + COLUMN_TARIF + ", " + COLUMN_VAT + ", " +
+                        COLUMN_ADDITIONAL_PAYMENT + " FROM " + TABLE_NAME +
+                        " WHERE " + COLUMN_ID + " > ? AND " + COLUMN_ID + " <= ?" +
+                        " AND " + COLUMN_HOUSE_NUMBER + " NOT GLOB '" + Blocks.PREFIX + "[0-9][0-9]'" +
+                        " ORDER BY " + COLUMN_ID,
+                new String[]{String.valueOf(fromId), String.valueOf(toId)});
+        while (c.moveToNext() && count < CHUNK_SIZE) {
+            ids[count] = c.getLong(0);
+            houseNumbers[count] = c.getString(1);
+            readAt[count] = c.getLong(2);
+            energy[count] = c.getLong(3);
+            tarif[count] = c.getLong(4);
+            vat[count] = c.getLong(5);
+            additional[count] = c.getLong(6);
+            count++;
+        }
+        c.close();
+
+        for (int i = 0; i < count; i++) {
+            String canonical = Blocks.canonical(houseNumbers[i]);
+            if (canonical == null) continue;
+            long id = ids[i];
+
+            DatabaseHelper.rebillNext(db, houseNumbers[i], readAt[i], id,
+                    DatabaseHelper.previousEnergy(db, houseNumbers[i], readAt[i], id));
+            db.execSQL("UPDATE " + TABLE_NAME + " SET " + COLUMN_HOUSE_NUMBER + "=? WHERE " + COLUMN_ID + "=?",
+                    new Object[]{canonical, id});
+            DatabaseHelper.rebill(db, id, energy[i], DatabaseHelper.previousEnergy(db, canonical, readAt[i], id),
+                    tarif[i], vat[i], additional[i]);
+            DatabaseHelper.rebillNext(db, canonical, readAt[i], id, energy[i]);
+        }
+    }
+
+    // ROUND() is half away from zero, like FixedPoint.mulDiv; NULL stays NULL
+    private static String toFixed(String column, int decimals) {
+        return "CAST(ROUND(" + column + " * " + FixedPoint.scale(decimals) + ") AS INTEGER)";
+    }
+
+    // Version 7, after the last chunk: replace the REAL table, keeping the AUTOINCREMENT high-water
+    // mark so ids of deleted readings are not handed out again
+    private static void swapInFixedPointTable(SQLiteDatabase db) {
+        long sequence = 0;
+        Cursor c = db.rawQuery("SELECT seq FROM sqlite_sequence WHERE name=?", new String[]{TABLE_NAME});
+        if (c.moveToFirst()) {
+            sequence = c.getLong(0);
+        }
+        c.close();
+
+        // Dropping the table drops its triggers too; the block_period_totals ones are only
+        // created by back-fill 9, which runs after this
+        db.execSQL("DROP TABLE " + TABLE_NAME);
+        db.execSQL("ALTER TABLE " + TABLE_FIXED_POINT + " RENAME TO " + TABLE_NAME);
+        DatabaseHelper.createIndexes(db);
+
+        db.execSQL("DELETE FROM sqlite_sequence WHERE name=?", new Object[]{TABLE_NAME});
+        db.execSQL("INSERT INTO sqlite_sequence (name, seq) VALUES (?, " +
+                        "MAX(?, IFNULL((SELECT MAX(" + COLUMN_ID + ") FROM " + TABLE_NAME + "), 0)))",
+                new Object[]{TABLE_NAME, sequence});
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.block;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+// Highest reading _id each export target has written, so "new since last export" only queries the
+// rows after it. A target is an export format plus "all" or a block number. Kept in its own
+// preferences file; safe to use from the export thread.
+public class ExportWatermarks {
+
+    private static final String PREFS_NAME = "export_watermarks";
+    private static final String KEY_ID = "id_";
+    private static final String KEY_TIME = "time_";
+
+    private final SharedPreferences preferences;
+
+    public ExportWatermarks(Context context) {
+        preferences = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    // houseNumber null for every block
+    public static String target(String format, String houseNumber) {
+        return format + "_" + (houseNumber == null ? "all" : houseNumber);
+    }
+
+    // Last _id exported to the target, 0 if it was never exported
+    public long lastId(String target) {
+        return preferences.getLong(KEY_ID + target, 0);
+    }
+
+    // When lastId was recorded, epoch millis; 0 if never
+    public long lastExportedAt(String target) {
+        return preferences.getLong(KEY_TIME + target, 0);
+    }
+
+    // Never moves backwards, so an older export finishing late cannot re-open rows already exported
+    public synchronized void advance(String target, long id, long exportedAt) {
+        if (id <= lastId(target)) return;
+        preferences.edit()
+                .putLong(KEY_ID + target, id)
+                .putLong(KEY_TIME + target, exportedAt)
+                .apply();
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.block;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Latest reading of every block 355/01 - 355/66, kept in arrays indexed by block number so the
+// previous reading for a new bill is a memory lookup. Warmed with one query when the database is
+// opened and updated by DatabaseHelper after each committed insert or delete. Reads (for example
+// from an export thread) take the shared lock, updates the exclusive one.
+final class LatestReadingCache {
+
+    // Returned when the cache cannot answer and the caller has to query the database
+    static final long UNKNOWN = Long.MIN_VALUE;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final long[] ids = new long[Blocks.LAST + 1]; // 0 while a block has no readings
+    private final long[] energy = new long[Blocks.LAST + 1];
+    private final long[] readAt = new long[Blocks.LAST + 1];
+    private boolean warm;
+
+    // Load every block's latest reading
+    void warm(SQLiteDatabase db) {
+        long[] newIds = new long[ids.length];
+        long[] newEnergy = new long[ids.length];
+        long[] newReadAt = new long[ids.length];
+
+        Cursor c = db.rawQuery(DatabaseHelper.SQL_LATEST_PER_BLOCK, null);
+        while (c.moveToNext()) {
+            int block = c.getInt(0);
+            newIds[block] = c.getLong(1);
+            newEnergy[block] = c.getLong(2);
+            newReadAt[block] = c.getLong(3);
+        }
+        c.close();
+
+        lock.writeLock().lock();
+        try {
+            System.arraycopy(newIds, 0, ids, 0, ids.length);
+            System.arraycopy(newEnergy, 0, energy, 0, ids.length);
+            System.arraycopy(newReadAt, 0, readAt, 0, ids.length);
+            warm = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Energy count of the block's latest reading, 0 when it has none
+    long latestEnergy(String houseNumber) {
+        int block = Blocks.number(houseNumber);
+        if (block < 0) return UNKNOWN;
+        lock.readLock().lock();
+        try {
+            if (!warm) return UNKNOWN;
+            return ids[block] == 0 ? 0 : energy[block];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Energy a new reading at newReadAt is billed against. Only answered when the new reading will
+    // become the block's latest, which is the normal case for a submit.
+    long energyBefore(String houseNumber, long newReadAt) {
+        int block = Blocks.number(houseNumber);
+        if (block < 0) return UNKNOWN;
+        lock.readLock().lock();
+        try {
+            if (!warm) return UNKNOWN;
+            if (ids[block] == 0) return 0;
+            return newReadAt >= readAt[block] ? energy[block] : UNKNOWN;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    long latestId(String houseNumber) {
+        int block = Blocks.number(houseNumber);
+        if (block < 0) return 0;
+        lock.readLock().lock();
+        try {
+            return ids[block];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // A reading was committed; it replaces the cached one if it is ordered after it
+    void onInserted(String houseNumber, long id, long energyCount, long newReadAt) {
+        int block = Blocks.number(houseNumber);
+        if (block < 0) return;
+        lock.writeLock().lock();
+        try {
+            if (!warm) return;
+            if (ids[block] == 0 || newReadAt > readAt[block] || (newReadAt == readAt[block] && id > ids[block])) {
+                ids[block] = id;
+                energy[block] = energyCount;
+                readAt[block] = newReadAt;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // The block's latest reading may have been deleted; look it up again
+    void reload(SQLiteDatabase db, String houseNumber) {
+        int block = Blocks.number(houseNumber);
+        if (block < 0) return;
+
+        long id = 0;
+        long energyCount = 0;
+        long latestReadAt = 0;
+        Cursor c = db.rawQuery(DatabaseHelper.SQL_LATEST_READING, new String[]{houseNumber});
+        if (c.moveToFirst()) {
+            id = c.getLong(0);
+            energyCount = c.getLong(1);
+            latestReadAt = c.getLong(2);
+        }
+        c.close();
+
+        lock.writeLock().lock();
+        try {
+            if (!warm) return;
+            ids[block] = id;
+            energy[block] = energyCount;
+            readAt[block] = latestReadAt;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
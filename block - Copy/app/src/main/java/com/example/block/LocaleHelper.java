@@ -3,36 +3,74 @@ package com.example.block;
 import android.content.Context;
 import android.content.SharedPreferences;
 import android.content.res.Configuration;
+import android.content.res.Resources;
 import android.os.Build;
 
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
+// The app's language: English or Amharic, saved in app_prefs. Activities take it on through
+// BaseActivity. switchLanguage changes it in place: open activities are told through their
+// listener and re-read their strings from the cached localized resources, instead of being
+// recreated, so the database connection and its caches stay as they are.
 public class LocaleHelper {
 
     private static final String PREFS_NAME = "app_prefs";
     private static final String KEY_LANGUAGE = "language";
 
+    public interface OnLanguageChangedListener {
+        void onLanguageChanged(String languageCode);
+    }
+
+    // Saved language, read from preferences once per process
+    private static volatile String language;
+
+    // Application configuration contexts per language, so strings of a language can be read
+    // without touching any activity's own resources
+    private static final Map<String, Context> contexts = new ConcurrentHashMap<>();
+
+    private static final List<OnLanguageChangedListener> listeners = new CopyOnWriteArrayList<>();
+
     // 🔹 Apply the chosen locale
     public static Context setLocale(Context context, String languageCode) {
         saveLanguage(context, languageCode); // save language
         return updateResources(context, languageCode);
     }
 
-    // 🔹 Toggle between English and Amharic
-    public static void toggleLanguage(Context context) {
-        String currentLang = getLanguage(context);
-        String newLang = currentLang.equals("en") ? "am" : "en";
-        setLocale(context, newLang);
+    // 🔹 Toggle between English and Amharic in place; returns the new language
+    public static String toggleLanguage(Context context) {
+        String newLang = getLanguage(context).equals("en") ? "am" : "en";
+        switchLanguage(context, newLang);
+        return newLang;
+    }
+
+    // 🔹 Save the language and tell every open activity; call on the main thread
+    public static void switchLanguage(Context context, String languageCode) {
+        if (languageCode.equals(getLanguage(context))) return;
+        saveLanguage(context, languageCode);
+        Locale.setDefault(new Locale(languageCode));
+        for (OnLanguageChangedListener listener : listeners) {
+            listener.onLanguageChanged(languageCode);
+        }
     }
 
     // 🔹 Get the saved language (default English)
     public static String getLanguage(Context context) {
-        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-        return prefs.getString(KEY_LANGUAGE, "en");
+        String lang = language;
+        if (lang == null) {
+            SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+            lang = prefs.getString(KEY_LANGUAGE, "en");
+            language = lang;
+        }
+        return lang;
     }
 
     // 🔹 Save the selected language
     private static void saveLanguage(Context context, String languageCode) {
+        language = languageCode;
         SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
         prefs.edit().putString(KEY_LANGUAGE, languageCode).apply();
     }
@@ -43,6 +81,37 @@ public class LocaleHelper {
         return updateResources(context, lang);
     }
 
+    // 🔹 The application context in a language, created once per language
+    public static Context localizedContext(Context context, String languageCode) {
+        Context cached = contexts.get(languageCode);
+        if (cached == null) {
+            Context app = context.getApplicationContext();
+            Configuration config = new Configuration(app.getResources().getConfiguration());
+            config.setLocale(new Locale(languageCode));
+            cached = app.createConfigurationContext(config);
+            contexts.put(languageCode, cached);
+        }
+        return cached;
+    }
+
+    // 🔹 Resources in a language, for strings read after a switch
+    public static Resources getResources(Context context, String languageCode) {
+        return localizedContext(context, languageCode).getResources();
+    }
+
+    public static void addListener(OnLanguageChangedListener listener) {
+        listeners.add(listener);
+    }
+
+    public static void removeListener(OnLanguageChangedListener listener) {
+        listeners.remove(listener);
+    }
+
+    // 🔹 Drop the cached contexts after a configuration change (rotation, font size, ...)
+    public static void onConfigurationChanged() {
+        contexts.clear();
+    }
+
     // 🔹 Update app resources
     private static Context updateResources(Context context, String languageCode) {
         Locale locale = new Locale(languageCode);
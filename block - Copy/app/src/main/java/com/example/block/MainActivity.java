@@ -1,20 +1,23 @@
 package com.example.block;
 
 import android.content.Intent;
-import android.content.SharedPreferences;
+import android.net.Uri;
 import android.os.Bundle;
 import android.view.Menu;
 import android.view.MenuItem;
-import android.content.Context;
+import android.view.View;
 import android.provider.Settings;
 import android.widget.TextView;
 import android.widget.Toast;
 import android.util.Log;
 
 import androidx.activity.EdgeToEdge;
-import androidx.appcompat.app.AppCompatActivity;
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.widget.Toolbar;
 import androidx.core.graphics.Insets;
+import androidx.core.view.OneShotPreDrawListener;
 import androidx.core.view.ViewCompat;
 import androidx.core.view.WindowInsetsCompat;
 
@@ -23,29 +26,39 @@ import com.google.android.material.textfield.TextInputEditText;
 import com.google.android.material.textfield.TextInputLayout;
 import android.widget.AutoCompleteTextView;
 
+import com.example.billing.FixedPoint;
+
+import java.io.FileNotFoundException;
+import java.io.InputStream;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Locale;
 
-public class MainActivity extends AppCompatActivity {
-
-    private static final String PREFS_NAME = "app_prefs";
-    private static final String KEY_LANGUAGE = "language";
+public class MainActivity extends BaseActivity {
 
     private static final String KEY_BLOCK = "block";
     private static final String KEY_COUNT = "count";
     private static final String KEY_TARIF = "tarif";
     private static final String KEY_VAT = "vat";
     private static final String KEY_ADDITIONAL = "additional";
-    private static final String KEY_PAYMENT_TEXT = "payment_text";
+    private static final String KEY_FINAL_PAYMENT = "final_payment";
+
+    private static final long NO_PAYMENT = -1;
 
-    private DatabaseHelper dbHelper;
+    // Per-line errors listed in the import summary; the rest are only counted
+    private static final int MAX_SHOWN_IMPORT_ERRORS = 20;
+
+    private ReadingRepository repository;
 
     private TextInputEditText blockEditText, countEditText, tarifEditText;
-    private TextInputLayout blockLayout, countLayout;
+    private TextInputLayout blockLayout, countLayout, tarifLayout, vatLayout, additionalLayout;
     private AutoCompleteTextView vatSpinner, additionalPaymentsSpinner;
     private MaterialButton btnClear, btnSubmit;
     private TextView paymentText;
+    private long finalPayment = NO_PAYMENT; // santim, shown in paymentText after a submit
+
+    private final ActivityResultLauncher<String[]> importLauncher =
+            registerForActivityResult(new ActivityResultContracts.OpenDocument(), this::importCsv);
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -69,11 +82,8 @@ public class MainActivity extends AppCompatActivity {
         }
         // --- ANDROID_ID DEVICE CHECK END ---
 
-        // Load saved language before setContentView
-        String lang = getSharedPreferences(PREFS_NAME, MODE_PRIVATE)
-                .getString(KEY_LANGUAGE, "en");
-        setAppLocale(lang);
-
+        // The saved language is already applied by BaseActivity.attachBaseContext, and the layout
+        // takes its hints and labels from string resources
         EdgeToEdge.enable(this);
         setContentView(R.layout.activity_main);
 
@@ -90,10 +100,11 @@ public class MainActivity extends AppCompatActivity {
             getSupportActionBar().setDisplayShowTitleEnabled(false);
         }
 
-        TextView toolbarTitle = toolbar.findViewById(R.id.onlytext);
-        toolbarTitle.setText(getString(R.string.block_management));
-
-        dbHelper = new DatabaseHelper(this);
+        // Opening the database (and any pending back-fill) waits until the first frame is drawn:
+        // the pre-draw listener runs just before it, and the posted task right after it
+        repository = ReadingRepository.getInstance(this);
+        View root = findViewById(R.id.main);
+        OneShotPreDrawListener.add(root, () -> root.post(repository::warmUp));
 
         blockEditText = findViewById(R.id.editText);
         countEditText = findViewById(R.id.count_);
@@ -108,14 +119,20 @@ public class MainActivity extends AppCompatActivity {
         btnClear = findViewById(R.id.btn_clear);
         btnSubmit = findViewById(R.id.btn_submit);
 
-        blockLayout.setHint(getString(R.string.block_house_number));
-        countLayout.setHint(getString(R.string.count));
-        tarifEditText.setHint(getString(R.string.tarif));
-        vatSpinner.setHint(getString(R.string.vat_percentage));
-        additionalPaymentsSpinner.setHint(getString(R.string.additional_payments_birr));
-        btnClear.setText(getString(R.string.clear));
-        btnSubmit.setText(getString(R.string.submit));
-        paymentText.setText(getString(R.string.payment));
+        TextView toolbarTitle = toolbar.findViewById(R.id.onlytext);
+        TextView propertyTitle = findViewById(R.id.property_information_title);
+        tarifLayout = findViewById(R.id.tarif_input_layout);
+        vatLayout = findViewById(R.id.vat_input_layout);
+        additionalLayout = findViewById(R.id.additional_payment_input_layout);
+        bindString(R.string.block_management, toolbarTitle::setText);
+        bindString(R.string.property_information, propertyTitle::setText);
+        bindString(R.string.block_house_number, blockLayout::setHint);
+        bindString(R.string.count, countLayout::setHint);
+        bindString(R.string.tarif, tarifLayout::setHint);
+        bindString(R.string.vat_percentage, vatLayout::setHint);
+        bindString(R.string.additional_payments_birr, additionalLayout::setHint);
+        bindString(R.string.clear, btnClear::setText);
+        bindString(R.string.submit, btnSubmit::setText);
 
         if (savedInstanceState != null) {
             blockEditText.setText(savedInstanceState.getString(KEY_BLOCK, ""));
@@ -123,20 +140,20 @@ public class MainActivity extends AppCompatActivity {
             tarifEditText.setText(savedInstanceState.getString(KEY_TARIF, ""));
             vatSpinner.setText(savedInstanceState.getString(KEY_VAT, ""), false);
             additionalPaymentsSpinner.setText(savedInstanceState.getString(KEY_ADDITIONAL, ""), false);
-            paymentText.setText(savedInstanceState.getString(KEY_PAYMENT_TEXT, getString(R.string.payment)));
+            finalPayment = savedInstanceState.getLong(KEY_FINAL_PAYMENT, NO_PAYMENT);
+            if (finalPayment != NO_PAYMENT) showPayment();
         }
 
         btnClear.setOnClickListener(v -> {
             blockEditText.setText("");
             countEditText.setText("");
-            blockLayout.setError(null);
-            countLayout.setError(null);
-            paymentText.setText(getString(R.string.payment));
+            clearErrors();
+            finalPayment = NO_PAYMENT;
+            showPayment();
         });
 
         btnSubmit.setOnClickListener(v -> {
-            blockLayout.setError(null);
-            countLayout.setError(null);
+            clearErrors();
 
             String block = blockEditText.getText().toString().trim();
             String countStr = countEditText.getText().toString().trim();
@@ -147,56 +164,36 @@ public class MainActivity extends AppCompatActivity {
             boolean valid = true;
 
             // ✅ Block validation with localized strings
-            if (block.isEmpty()) {
-                blockLayout.setError(getString(R.string.required));
-                valid = false;
-            } else if (!block.startsWith("355/")) {
-                blockLayout.setError(getString(R.string.block_must_start));
+            int blockError = Blocks.validationError(block);
+            if (blockError != 0) {
+                blockLayout.setError(getString(blockError));
                 valid = false;
-            } else {
-                String afterPrefix = block.substring(4);
-                try {
-                    int number = Integer.parseInt(afterPrefix);
-                    if (number < 1 || number > 66) {
-                        blockLayout.setError(getString(R.string.block_range_error));
-                        valid = false;
-                    }
-                } catch (NumberFormatException e) {
-                    blockLayout.setError(getString(R.string.invalid_number_format));
-                    valid = false;
-                }
             }
 
-            if (countStr.isEmpty()) {
-                countLayout.setError(getString(R.string.required));
-                valid = false;
-            }
-            if (tarifStr.isEmpty() || vatStr.isEmpty() || addPaymentStr.isEmpty()) {
+            // Each amount is checked on its own, so the error shows on the field that has it
+            Long count = parseAmount(countStr, FixedPoint.ENERGY_DECIMALS, countLayout);
+            Long tarif = parseAmount(tarifStr, FixedPoint.TARIF_DECIMALS, tarifLayout);
+            Long vat = parseAmount(vatStr, FixedPoint.PERCENT_DECIMALS, vatLayout);
+            Long addPayment = parseAmount(addPaymentStr, FixedPoint.MONEY_DECIMALS, additionalLayout);
+            if (count == null || tarif == null || vat == null || addPayment == null) {
                 valid = false;
             }
 
             if (!valid) return;
 
-            float count = Float.parseFloat(countStr);
-            float tarif = Float.parseFloat(tarifStr);
-            float vat = Float.parseFloat(vatStr);
-            float addPayment = Float.parseFloat(addPaymentStr);
-
-            float previousCount = dbHelper.getRecentCount(block);
-            float usedCount = count - previousCount;
-            if (usedCount < 0) usedCount = 0;
+            // "355/7" is stored as "355/07", the block every cache and report keys on
+            block = Blocks.canonical(block);
 
-            float finalPayment = (usedCount * tarif)
-                    + ((usedCount * tarif) * (vat / 100))
-                    + addPayment;
+            long now = System.currentTimeMillis();
+            String currentDate = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault()).format(new Date(now));
+            String currentTime = new SimpleDateFormat("HH:mm:ss", Locale.getDefault()).format(new Date(now));
 
-            paymentText.setText(String.format(Locale.getDefault(),
-                    "%s: %.2f %s", getString(R.string.payment), finalPayment, "Birr"));
-
-            String currentDate = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault()).format(new Date());
-            String currentTime = new SimpleDateFormat("HH:mm:ss", Locale.getDefault()).format(new Date());
-
-            dbHelper.insertData(block, count, vat, addPayment, finalPayment, tarif, currentDate, currentTime);
+            // Usage, VAT and the final payment are billed against the previous reading on insert
+            repository.insertReading(block, count, vat, addPayment, tarif, currentDate, currentTime, now,
+                    billed -> {
+                        finalPayment = billed;
+                        showPayment();
+                    });
         });
     }
 
@@ -208,14 +205,7 @@ public class MainActivity extends AppCompatActivity {
         outState.putString(KEY_TARIF, tarifEditText.getText().toString());
         outState.putString(KEY_VAT, vatSpinner.getText().toString());
         outState.putString(KEY_ADDITIONAL, additionalPaymentsSpinner.getText().toString());
-        outState.putString(KEY_PAYMENT_TEXT, paymentText.getText().toString());
-    }
-
-    @Override
-    protected void attachBaseContext(Context newBase) {
-        SharedPreferences prefs = newBase.getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
-        String lang = prefs.getString(KEY_LANGUAGE, "en");
-        super.attachBaseContext(LocaleHelper.setLocale(newBase, lang));
+        outState.putLong(KEY_FINAL_PAYMENT, finalPayment);
     }
 
     @Override
@@ -228,34 +218,102 @@ public class MainActivity extends AppCompatActivity {
     public boolean onOptionsItemSelected(MenuItem item) {
         int id = item.getItemId();
         if (id == R.id.action_switch_language) {
-            String currentLang = getSharedPreferences(PREFS_NAME, MODE_PRIVATE)
-                    .getString(KEY_LANGUAGE, "en");
-            if (currentLang.equals("en")) {
-                setLocale("am"); // Amharic
-            } else {
-                setLocale("en"); // English
-            }
+            // English <-> Amharic in place; see onLanguageChanged
+            LocaleHelper.toggleLanguage(this);
             return true;
         } else if (id == R.id.action_history) {
             startActivity(new Intent(this, MainActivity2.class));
             return true;
+        } else if (id == R.id.action_import_csv) {
+            importLauncher.launch(new String[]{"text/csv", "text/comma-separated-values", "text/plain"});
+            return true;
         }
         return super.onOptionsItemSelected(item);
     }
 
-    private void setLocale(String languageCode) {
-        getSharedPreferences(PREFS_NAME, MODE_PRIVATE).edit()
-                .putString(KEY_LANGUAGE, languageCode)
-                .apply();
-        recreate();
+    private void importCsv(Uri uri) {
+        if (uri == null) return;
+        InputStream in;
+        try {
+            in = getContentResolver().openInputStream(uri);
+        } catch (FileNotFoundException e) {
+            in = null;
+        }
+        if (in == null) {
+            Toast.makeText(this, R.string.import_failed, Toast.LENGTH_LONG).show();
+            return;
+        }
+        repository.importCsv(in, new ReadingRepository.Callback<ReadingImporter.Result>() {
+            @Override
+            public void onResult(ReadingImporter.Result result) {
+                showImportResult(result);
+            }
+
+            @Override
+            public void onError(Exception e) {
+                Log.e("MainActivity", "CSV import failed", e);
+                Toast.makeText(MainActivity.this, R.string.import_failed, Toast.LENGTH_LONG).show();
+            }
+        });
+    }
+
+    private void showImportResult(ReadingImporter.Result result) {
+        if (isFinishing()) return;
+        StringBuilder message = new StringBuilder(getString(R.string.import_result, result.imported, result.rejected));
+        int shown = Math.min(result.errors.size(), MAX_SHOWN_IMPORT_ERRORS);
+        for (int i = 0; i < shown; i++) {
+            ReadingImporter.LineError error = result.errors.get(i);
+            message.append('\n').append(getString(R.string.import_line_error, error.line, getString(error.message)));
+        }
+        if (result.rejected > shown) {
+            message.append("\n…");
+        }
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.import_csv)
+                .setMessage(message)
+                .setPositiveButton(android.R.string.ok, null)
+                .show();
+    }
+
+    private void showPayment() {
+        if (finalPayment == NO_PAYMENT) {
+            paymentText.setText(getString(R.string.payment));
+        } else {
+            paymentText.setText(getString(R.string.payment) + ": " +
+                    FixedPoint.format(finalPayment, FixedPoint.MONEY_DECIMALS) + " Birr");
+        }
+    }
+
+    // The bound labels and the menu are swapped by BaseActivity; the payment line and any field
+    // errors are shown again in the new language
+    @Override
+    public void onLanguageChanged(String languageCode) {
+        super.onLanguageChanged(languageCode);
+        if (paymentText == null) return; // finished in onCreate
+        showPayment();
+        clearErrors();
+    }
+
+    // Fixed-point value of a field, or null after showing why it is not one on the field's layout
+    private Long parseAmount(String text, int decimals, TextInputLayout layout) {
+        if (text.isEmpty()) {
+            layout.setError(getString(R.string.required));
+            return null;
+        }
+        try {
+            return FixedPoint.parse(text, decimals);
+        } catch (NumberFormatException | ArithmeticException e) {
+            layout.setError(getString(R.string.invalid_number_format));
+            return null;
+        }
     }
 
-    private void setAppLocale(String languageCode) {
-        Locale locale = new Locale(languageCode);
-        Locale.setDefault(locale);
-        android.content.res.Configuration config = new android.content.res.Configuration();
-        config.setLocale(locale);
-        getResources().updateConfiguration(config, getResources().getDisplayMetrics());
+    private void clearErrors() {
+        blockLayout.setError(null);
+        countLayout.setError(null);
+        tarifLayout.setError(null);
+        vatLayout.setError(null);
+        additionalLayout.setError(null);
     }
 
     @Override
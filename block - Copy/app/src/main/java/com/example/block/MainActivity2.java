@@ -2,48 +2,54 @@ package com.example.block;
 
 import android.content.SharedPreferences;
 import android.database.Cursor;
-import android.graphics.Canvas;
-import android.graphics.Paint;
-import android.graphics.pdf.PdfDocument;
 import android.os.Bundle;
 import android.os.Environment;
 import android.text.TextUtils;
+import android.view.Menu;
+import android.view.View;
 import android.widget.ImageView;
 import android.widget.PopupMenu;
+import android.widget.TextView;
 import android.widget.Toast;
 
-import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.view.ViewCompat;
 import androidx.core.view.WindowInsetsCompat;
 
+import com.google.android.material.appbar.MaterialToolbar;
 import com.google.android.material.button.MaterialButton;
+import com.google.android.material.progressindicator.LinearProgressIndicator;
 import com.google.android.material.textfield.TextInputEditText;
+import com.google.android.material.textfield.TextInputLayout;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.CancellationException;
 
-public class MainActivity2 extends AppCompatActivity {
+public class MainActivity2 extends BaseActivity {
 
     private TextInputEditText blockEditText;
     private MaterialButton searchButton;
     private ImageView downloadIcon;
+    private static final String KEY_EXPORT_FORMAT = "export_format";
+    private static final String FORMAT_PDF = "pdf";
+    private static final String FORMAT_CSV = "csv";
+    private static final String FORMAT_TSV = "tsv";
+
     private SharedPreferences preferences;
+    private ExportWatermarks watermarks;
+    private LinearProgressIndicator exportProgress;
+    private ReadingExporter runningExport; // non-null while an export is being written
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
 
-        // Load saved language
+        // The saved language is applied by BaseActivity.attachBaseContext
         preferences = getSharedPreferences("app_prefs", MODE_PRIVATE);
-        String lang = preferences.getString("language", "en"); // default English
-        Locale locale = new Locale(lang);
-        Locale.setDefault(locale);
-        android.content.res.Configuration config = getResources().getConfiguration();
-        config.setLocale(locale);
-        getResources().updateConfiguration(config, getResources().getDisplayMetrics());
+        watermarks = new ExportWatermarks(this);
 
         setContentView(R.layout.activity_main2);
 
@@ -61,48 +67,92 @@ public class MainActivity2 extends AppCompatActivity {
 
         // Toolbar & download icon
         downloadIcon = findViewById(R.id.downloadIcon);
+        exportProgress = findViewById(R.id.exportProgress);
 
         // Search UI
         blockEditText = findViewById(R.id.editText);
         searchButton = findViewById(R.id.searchButton);
 
+        MaterialToolbar toolbar = findViewById(R.id.toolbar);
+        TextView searchTitle = findViewById(R.id.search_title);
+        TextView enterBlockLabel = findViewById(R.id.enter_block_label);
+        TextInputLayout blockLayout = findViewById(R.id.block_input_layout);
+        TextView resultsTitle = findViewById(R.id.results_title);
+        bindString(R.string.search_property, toolbar::setTitle);
+        bindString(R.string.download_pdf, downloadIcon::setContentDescription);
+        bindString(R.string.search_property, searchTitle::setText);
+        bindString(R.string.enter_block, enterBlockLabel::setText);
+        bindString(R.string.block_house_number, blockLayout::setHint);
+        bindString(R.string.search_property, searchButton::setText);
+        bindString(R.string.search_results, resultsTitle::setText);
+
         searchButton.setOnClickListener(v -> {
             String block = blockEditText.getText().toString().trim();
             if (TextUtils.isEmpty(block)) {
                 blockEditText.setError(getString(R.string.required));
                 return;
             }
-            displayData(block);
+            displayData(DatabaseHelper.canonicalHouseNumber(block));
         });
 
         // Download icon click
         downloadIcon.setOnClickListener(v -> {
-            String block = blockEditText.getText().toString().trim();
+            // A second tap while exporting cancels the running export
+            if (runningExport != null) {
+                runningExport.cancel();
+                return;
+            }
 
-            if (TextUtils.isEmpty(block)) {
-                // Show date filter popup
-                PopupMenu popupMenu = new PopupMenu(this, downloadIcon);
-                popupMenu.getMenuInflater().inflate(R.menu.date, popupMenu.getMenu());
-                popupMenu.setOnMenuItemClickListener(item -> {
-                    int id = item.getItemId();
-                    if (id == R.id.menu_day) {
-                        exportDatabaseToPDF("day");
-                    } else if (id == R.id.menu_week) {
-                        exportDatabaseToPDF("week");
-                    } else if (id == R.id.menu_month) {
-                        exportDatabaseToPDF("month");
-                    } else if (id == R.id.menu_year) {
-                        exportDatabaseToPDF("year");
-                    } else if (id == R.id.menu_all) {
-                        exportDatabaseToPDF(null); // all data
-                    }
-                    return true;
-                });
-                popupMenu.show();
-            } else {
-                exportDatabaseToPDF(block); // export filtered by block
+            showExportMenu();
+        });
+    }
+
+    // Format choice plus either the date filters or, when a block is typed in, that block
+    private void showExportMenu() {
+        // Readings are stored under the canonical "355/NN", whichever way the block was typed
+        String block = DatabaseHelper.canonicalHouseNumber(blockEditText.getText().toString().trim());
+        boolean byBlock = !TextUtils.isEmpty(block);
+
+        PopupMenu popupMenu = new PopupMenu(this, downloadIcon);
+        Menu menu = popupMenu.getMenu();
+        getMenuInflater().inflate(R.menu.date, menu);
+        menu.findItem(formatMenuId(preferences.getString(KEY_EXPORT_FORMAT, FORMAT_PDF))).setChecked(true);
+        menu.setGroupVisible(R.id.group_filter, !byBlock);
+        menu.findItem(R.id.menu_block).setVisible(byBlock).setTitle(getString(R.string.menu_block, block));
+
+        popupMenu.setOnMenuItemClickListener(item -> {
+            int id = item.getItemId();
+            if (id == R.id.menu_format_pdf || id == R.id.menu_format_csv || id == R.id.menu_format_tsv) {
+                // Remember the format and reopen the menu so a filter can be picked
+                String format = id == R.id.menu_format_csv ? FORMAT_CSV : id == R.id.menu_format_tsv ? FORMAT_TSV : FORMAT_PDF;
+                preferences.edit().putString(KEY_EXPORT_FORMAT, format).apply();
+                showExportMenu();
+            } else if (id == R.id.menu_day) {
+                exportDatabase("day");
+            } else if (id == R.id.menu_week) {
+                exportDatabase("week");
+            } else if (id == R.id.menu_month) {
+                exportDatabase("month");
+            } else if (id == R.id.menu_year) {
+                exportDatabase("year");
+            } else if (id == R.id.menu_all) {
+                exportDatabase(null); // all data
+            } else if (id == R.id.menu_block) {
+                exportDatabase(block); // export filtered by block
+            } else if (id == R.id.menu_since_last) {
+                exportSinceLastExport(byBlock ? block : null);
             }
+            return true;
         });
+        popupMenu.show();
+    }
+
+    private static int formatMenuId(String format) {
+        switch (format) {
+            case FORMAT_CSV: return R.id.menu_format_csv;
+            case FORMAT_TSV: return R.id.menu_format_tsv;
+            default: return R.id.menu_format_pdf;
+        }
     }
 
     private void displayData(String block) {
@@ -113,150 +163,122 @@ public class MainActivity2 extends AppCompatActivity {
                 .commit();
     }
 
-    private void exportDatabaseToPDF(String filter) {
-        DatabaseHelper dbHelper = new DatabaseHelper(this);
-        Cursor cursor;
+    // Full export of a date window (day/week/month/year), a block, or everything (null). Block and
+    // "all" exports also move that target's watermark up to the newest reading they included.
+    private void exportDatabase(String filter) {
+        boolean dateWindow = filter != null
+                && (filter.equals("day") || filter.equals("week") || filter.equals("month") || filter.equals("year"));
+        String watermarkTarget = dateWindow ? null : ExportWatermarks.target(currentFormat(), filter);
+        runExport(filter == null ? "all" : filter, R.string.no_data_found, watermarkTarget,
+                (dbHelper, upToId) -> openExportCursor(dbHelper, filter));
+    }
 
-        if (filter == null) {
-            cursor = dbHelper.getAllData();
-        } else if (filter.equals("day") || filter.equals("week") || filter.equals("month") || filter.equals("year")) {
-            cursor = dbHelper.getRecordsByDateFilter(filter);
-        } else {
-            cursor = dbHelper.getRecordsByBlock(filter);
-        }
+    // Only the readings entered after the last export of this format and scope (null for all blocks),
+    // read as a primary key range
+    private void exportSinceLastExport(String houseNumber) {
+        String target = ExportWatermarks.target(currentFormat(), houseNumber);
+        long afterId = watermarks.lastId(target);
+        runExport("new_" + (houseNumber == null ? "all" : houseNumber), R.string.no_new_readings, target,
+                (dbHelper, upToId) -> dbHelper.getRecordsAfterId(houseNumber, afterId, upToId));
+    }
 
-        if (cursor == null || cursor.getCount() == 0) {
-            Toast.makeText(this, "No data found", Toast.LENGTH_LONG).show();
-            return;
-        }
+    // Opens the export cursor on the read thread; readings with _id <= upToId must be included
+    private interface ExportQuery {
+        Cursor open(DatabaseHelper dbHelper, long upToId);
+    }
 
-        File exportDir = Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DOWNLOADS);
-        if (!exportDir.exists()) exportDir.mkdirs();
+    private String currentFormat() {
+        return preferences.getString(KEY_EXPORT_FORMAT, FORMAT_PDF);
+    }
 
-        String safeFilter = (filter == null) ? "all" : filter.replaceAll("[\\\\/:*?\"<>|]", "_");
+    // watermarkTarget, when not null, is advanced to the newest reading included once the export succeeds
+    private void runExport(String name, int emptyMessage, String watermarkTarget, ExportQuery query) {
+        File exportDir = Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DOWNLOADS);
+        String safeFilter = name.replaceAll("[\\\\/:*?\"<>|]", "_");
         String timestamp = new SimpleDateFormat("yyyy-MM-dd_HH-mm-ss", Locale.getDefault()).format(new Date());
-        String fileName = "property_data_" + safeFilter + "_" + timestamp + ".pdf";
-        File file = new File(exportDir, fileName);
-
-        PdfDocument pdfDocument = new PdfDocument();
-        PdfDocument.PageInfo pageInfo = new PdfDocument.PageInfo.Builder(595, 842, 1).create();
-        PdfDocument.Page page = pdfDocument.startPage(pageInfo);
-        Canvas canvas = page.getCanvas();
-        Paint paint = new Paint();
-        Paint linePaint = new Paint();
-        linePaint.setStrokeWidth(1f);
-
-        int x = 10;
-        int y = 40;
-        int rowHeight = 40;
-
-        String[] headers = {
-                " የቤት ቁጥር ", " የሀይል መጠን ", " ታርፍ ", " ቫት ",
-                " ወርሃዊ መዋጮ ", " ጠቅላላ ክፍያ ", " ቀን ", " ሰአት "
-        };
-        int[] colWidths = {70, 70, 60, 80, 90, 90, 70, 80};
-
-        int xPos = x;
-        paint.setFakeBoldText(true);
-        for (int i = 0; i < headers.length; i++) {
-            canvas.drawText(headers[i], xPos + 5, y, paint);
-            xPos += colWidths[i];
+        String baseName = "property_data_" + safeFilter + "_" + timestamp;
+        String format = currentFormat();
+        ReadingExporter exporter;
+        if (FORMAT_CSV.equals(format)) {
+            exporter = new CsvExporter(exportDir, baseName, CsvExporter.COMMA);
+        } else if (FORMAT_TSV.equals(format)) {
+            exporter = new CsvExporter(exportDir, baseName, CsvExporter.TAB);
+        } else {
+            exporter = new PdfExporter(exportDir, baseName);
         }
-        canvas.drawLine(x, y + 10, x + getTotalWidth(colWidths), y + 10, linePaint);
-        y += rowHeight;
-
-        while (cursor.moveToNext()) {
-            xPos = x;
-            paint.setFakeBoldText(false);
-
-            String houseNumber = cursor.getString(1);
-
-            // --- parse numbers safely ---
-            double currentEnergy = safeParse(cursor.getString(2));
-            double tarifVal = safeParse(cursor.getString(6));
-            double vatPercVal = safeParse(cursor.getString(3));
-
-            // --- NEW VAT CALCULATION BASED ON ENERGY DIFFERENCE ---
-            double previousEnergy = dbHelper.getPreviousEnergy(houseNumber, cursor.getString(7), cursor.getString(8));
-            double energyDiff = currentEnergy - previousEnergy;
-            if (energyDiff < 0) energyDiff = currentEnergy; // first record
-
-            double baseCharge = energyDiff * tarifVal;
-            double vatAmount = (baseCharge * vatPercVal) / 100.0;
-
-            String vat = formatNumber(String.valueOf(vatPercVal)) + "(" + formatNumber(String.valueOf(vatAmount)) + ")";
-            String power = formatNumber(String.valueOf(currentEnergy));
-            String tarif = formatNumber(String.valueOf(tarifVal));
-            String additional = formatNumber(cursor.getString(4));
-            String total = formatNumber(cursor.getString(5));
-            String date = cursor.getString(7);
-            String time = cursor.getString(8);
-
-            String[] rowData = {houseNumber, power, tarif, vat, additional, total, date, time};
-
-            for (int i = 0; i < rowData.length; i++) {
-                String value = rowData[i] != null ? rowData[i] : "";
-                canvas.drawText(value, xPos + 5, y, paint);
-                canvas.drawLine(xPos, y - rowHeight + 10, xPos, y + 10, linePaint);
-                xPos += colWidths[i];
-            }
-
-            canvas.drawLine(xPos, y - rowHeight + 10, xPos, y + 10, linePaint);
-            canvas.drawLine(x, y + 10, x + getTotalWidth(colWidths), y + 10, linePaint);
-            y += rowHeight;
 
-            if (y > pageInfo.getPageHeight() - 50) {
-                pdfDocument.finishPage(page);
-                page = pdfDocument.startPage(pageInfo);
-                canvas = page.getCanvas();
-                y = 40;
+        runningExport = exporter;
+        exportProgress.setIndeterminate(true);
+        exportProgress.setVisibility(View.VISIBLE);
+
+        ReadingRepository repository = ReadingRepository.getInstance(this);
+        repository.read(() -> {
+            DatabaseHelper dbHelper = repository.getDatabaseHelper();
+            // Pinned before the query, so every reading up to it is in this export
+            long upToId = dbHelper.getMaxId();
+            Cursor cursor = query.open(dbHelper, upToId);
+            List<File> files;
+            try {
+                files = exporter.export(cursor, (rows, totalRows, pages) -> runOnUiThread(() -> {
+                    if (runningExport != exporter) return;
+                    exportProgress.setIndeterminate(false);
+                    exportProgress.setProgressCompat(rows * 100 / totalRows, true);
+                }));
+            } finally {
+                cursor.close();
+            }
+            if (watermarkTarget != null) {
+                watermarks.advance(watermarkTarget, upToId, System.currentTimeMillis());
+            }
+            return files;
+        }, new ReadingRepository.Callback<List<File>>() {
+            @Override
+            public void onResult(List<File> files) {
+                finishExport(exporter);
+                if (files.isEmpty()) {
+                    Toast.makeText(MainActivity2.this, emptyMessage, Toast.LENGTH_LONG).show();
+                } else {
+                    String message = "Saved in Downloads:\n" + files.get(0).getAbsolutePath();
+                    if (files.size() > 1) message += "\n(+" + (files.size() - 1) + " more parts)";
+                    Toast.makeText(MainActivity2.this, message, Toast.LENGTH_LONG).show();
+                }
             }
-        }
-
-        pdfDocument.finishPage(page);
 
-        try {
-            pdfDocument.writeTo(new FileOutputStream(file));
-            Toast.makeText(this, "PDF saved in Downloads:\n" + file.getAbsolutePath(), Toast.LENGTH_LONG).show();
-        } catch (Exception e) {
-            Toast.makeText(this, "Error exporting PDF: " + e.getMessage(), Toast.LENGTH_LONG).show();
-        } finally {
-            pdfDocument.close();
-            cursor.close();
-        }
+            @Override
+            public void onError(Exception e) {
+                finishExport(exporter);
+                if (e instanceof CancellationException) {
+                    Toast.makeText(MainActivity2.this, R.string.export_cancelled, Toast.LENGTH_SHORT).show();
+                } else {
+                    Toast.makeText(MainActivity2.this, "Error exporting: " + e.getMessage(), Toast.LENGTH_LONG).show();
+                }
+            }
+        });
     }
 
-    private double safeParse(String value) {
-        if (value == null || value.trim().isEmpty()) return 0.0;
-        try {
-            return Double.parseDouble(value.replaceAll(",", "").trim());
-        } catch (Exception e) {
-            return 0.0;
+    private void finishExport(ReadingExporter exporter) {
+        if (runningExport == exporter) {
+            runningExport = null;
+            exportProgress.setVisibility(View.GONE);
         }
     }
 
-    private String formatNumber(String value) {
-        if (value == null || value.trim().isEmpty()) return "0.0";
-        try {
-            double number = Double.parseDouble(value.replaceAll(",", "").trim());
-            if (number == 0) {
-                return "0.0";
-            } else {
-                String formatted = String.format(Locale.US, "%.2f", number);
-                if (formatted.indexOf('.') > 0) {
-                    formatted = formatted.replaceAll("0*$", "");
-                    if (formatted.endsWith(".")) formatted += "0";
-                }
-                return formatted;
-            }
-        } catch (NumberFormatException e) {
-            return value;
+    // Runs on a repository thread; the caller closes the cursor
+    private Cursor openExportCursor(DatabaseHelper dbHelper, String filter) {
+        if (filter == null) {
+            return dbHelper.getRecords(null, Long.MIN_VALUE, Long.MAX_VALUE);
+        } else if (filter.equals("day") || filter.equals("week") || filter.equals("month") || filter.equals("year")) {
+            return dbHelper.getRecordsByDateFilter(filter);
+        } else {
+            return dbHelper.getRecords(filter, Long.MIN_VALUE, Long.MAX_VALUE);
         }
     }
 
-    private int getTotalWidth(int[] colWidths) {
-        int total = 0;
-        for (int w : colWidths) total += w;
-        return total;
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (runningExport != null && isFinishing()) {
+            runningExport.cancel();
+        }
     }
 }
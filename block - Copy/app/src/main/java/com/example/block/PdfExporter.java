@@ -0,0 +1,262 @@
+package com.example.block;
+
+import android.database.Cursor;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Picture;
+import android.graphics.pdf.PdfDocument;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Writes the readings of a cursor to PDF. Rows are read from the cursor in batches of BATCH_ROWS
+// and formatted into measured cells (PdfRowFormatter) on a pool of formatting threads, while the
+// calling (background) thread, the only one that touches the PdfDocument, draws finished batches
+// in cursor order. At most two batches per formatting thread are in flight, so memory does not
+// grow with the row count. PdfDocument keeps every finished page until writeTo, so the output is
+// split into files of at most MAX_PAGES_PER_FILE pages for the same reason.
+// Column widths come from the data (PdfTableLayout, one pass over the cursor before the first
+// page), long cells are wrapped or cut to their column, and text widths are measured once per
+// distinct string (TextWidthCache). The header is recorded once per export and replayed on every
+// page. Progress is reported after every finished page.
+public class PdfExporter implements ReadingExporter {
+
+    static final int PAGE_WIDTH = 595;
+    static final int PAGE_HEIGHT = 842;
+    static final int MAX_PAGES_PER_FILE = 200;
+    static final int BATCH_ROWS = 256;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final int X = 10;
+    private static final int TOP = 40;
+    private static final int ROW_HEIGHT = 40;
+
+    private static final String[] HEADERS = {
+            "የቤት ቁጥር", "የሀይል መጠን", "ታርፍ", "ቫት",
+            "ወርሃዊ መዋጮ", "ጠቅላላ ክፍያ", "ቀን", "ሰአት"
+    };
+
+    private final File exportDir;
+    private final String baseName;
+    private final int formatThreads;
+    private final Paint paint = new Paint();
+    private final Paint headerPaint = new Paint();
+    private final Paint linePaint = new Paint();
+    private final TextWidthCache textWidths = new TextWidthCache();
+
+    private volatile boolean cancelled;
+
+    public PdfExporter(File exportDir, String baseName) {
+        this(exportDir, baseName, Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+    }
+
+    // formatThreads: threads formatting rows alongside the writing thread
+    public PdfExporter(File exportDir, String baseName, int formatThreads) {
+        this.exportDir = exportDir;
+        this.baseName = baseName;
+        this.formatThreads = formatThreads;
+        headerPaint.setFakeBoldText(true);
+        linePaint.setStrokeWidth(1f);
+    }
+
+    TextWidthCache textWidths() {
+        return textWidths;
+    }
+
+    @Override
+    public void cancel() {
+        cancelled = true;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public List<File> export(Cursor cursor, ProgressListener listener) throws IOException {
+        List<File> files = new ArrayList<>();
+        int totalRows = cursor.getCount();
+        if (totalRows == 0) {
+            return files;
+        }
+        if (!exportDir.exists()) exportDir.mkdirs();
+
+        PdfTableLayout layout = PdfTableLayout.measure(cursor, HEADERS, headerPaint, paint, textWidths,
+                X, PAGE_WIDTH - 2 * X);
+        PdfRowFormatter formatter = new PdfRowFormatter(paint, textWidths, layout);
+        Picture header = recordHeader(layout);
+
+        DatabaseHelper.RowReader reader = new DatabaseHelper.RowReader(cursor);
+        PdfDocument.PageInfo pageInfo = new PdfDocument.PageInfo.Builder(PAGE_WIDTH, PAGE_HEIGHT, 1).create();
+
+        ExecutorService pool = Executors.newFixedThreadPool(formatThreads, formatThreadFactory());
+        ArrayDeque<Future<PdfRowFormatter.Cells[]>> inFlight = new ArrayDeque<>();
+        boolean moreRows = true;
+
+        PdfDocument document = null;
+        PdfDocument.Page page = null;
+        int pagesInFile = 0;
+        int pagesWritten = 0;
+        int rowsWritten = 0;
+        int y = 0;
+
+        try {
+            while (true) {
+                // Keep the formatting threads busy while this thread draws
+                while (moreRows && inFlight.size() < 2 * formatThreads) {
+                    Reading[] batch = new Reading[BATCH_ROWS];
+                    int count = 0;
+                    while (count < BATCH_ROWS && cursor.moveToNext()) {
+                        batch[count++] = reader.read();
+                    }
+                    moreRows = count == BATCH_ROWS;
+                    if (count > 0) {
+                        int batchSize = count;
+                        inFlight.add(pool.submit(() -> formatter.format(batch, batchSize)));
+                    }
+                }
+                Future<PdfRowFormatter.Cells[]> next = inFlight.poll();
+                if (next == null) break;
+
+                for (PdfRowFormatter.Cells row : await(next)) {
+                    if (cancelled || Thread.currentThread().isInterrupted()) {
+                        throw new CancellationException("PDF export cancelled");
+                    }
+
+                    if (page == null) {
+                        if (document == null) {
+                            document = new PdfDocument();
+                            pagesInFile = 0;
+                        }
+                        page = document.startPage(pageInfo);
+                        page.getCanvas().drawPicture(header);
+                        y = TOP + ROW_HEIGHT;
+                    }
+
+                    y = drawRow(page.getCanvas(), layout, row, y);
+                    rowsWritten++;
+
+                    if (y > PAGE_HEIGHT - 50) {
+                        document.finishPage(page);
+                        page = null;
+                        pagesInFile++;
+                        pagesWritten++;
+                        if (listener != null) listener.onProgress(rowsWritten, totalRows, pagesWritten);
+
+                        if (pagesInFile == MAX_PAGES_PER_FILE) {
+                            PdfDocument full = document;
+                            document = null;
+                            files.add(write(full, files.size() + 1));
+                        }
+                    }
+                }
+            }
+
+            if (page != null) {
+                document.finishPage(page);
+                page = null;
+                pagesWritten++;
+                if (listener != null) listener.onProgress(rowsWritten, totalRows, pagesWritten);
+            }
+            if (document != null) {
+                PdfDocument last = document;
+                document = null;
+                files.add(write(last, files.size() + 1));
+            }
+            return files;
+        } catch (IOException | RuntimeException e) {
+            for (File f : files) f.delete();
+            throw e;
+        } finally {
+            pool.shutdownNow();
+            if (document != null) {
+                document.close();
+            }
+        }
+    }
+
+    // Result of a formatting task; failures and interrupts surface as the export's own exceptions
+    private static PdfRowFormatter.Cells[] await(Future<PdfRowFormatter.Cells[]> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("PDF export interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private static ThreadFactory formatThreadFactory() {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> new Thread(runnable, "pdf-format-" + count.incrementAndGet());
+    }
+
+    // Write and close one part; parts after the first get a "_partN" suffix
+    private File write(PdfDocument document, int part) throws IOException {
+        String suffix = part == 1 ? "" : "_part" + part;
+        File file = new File(exportDir, baseName + suffix + ".pdf");
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE)) {
+            document.writeTo(out);
+        } catch (IOException e) {
+            file.delete();
+            throw e;
+        } finally {
+            document.close();
+        }
+        return file;
+    }
+
+    // The header row, fitted to the layout like the cells
+    private Picture recordHeader(PdfTableLayout layout) {
+        Picture picture = new Picture();
+        Canvas canvas = picture.beginRecording(PAGE_WIDTH, TOP + ROW_HEIGHT);
+        Paint measure = new Paint(headerPaint);
+        TextWidthCache headerWidths = new TextWidthCache();
+        for (int i = 0; i < HEADERS.length; i++) {
+            String[] lines = PdfRowFormatter.fit(HEADERS[i], layout.textWidth(i), measure, headerWidths);
+            drawLines(canvas, lines, layout.x[i] + PdfTableLayout.PADDING, TOP, headerPaint);
+        }
+        canvas.drawLine(layout.left, TOP + 10, layout.right, TOP + 10, linePaint);
+        picture.endRecording();
+        return picture;
+    }
+
+    private int drawRow(Canvas canvas, PdfTableLayout layout, PdfRowFormatter.Cells row, int y) {
+        for (int i = 0; i < row.lines.length; i++) {
+            float x = layout.x[i];
+            drawLines(canvas, row.lines[i], x + PdfTableLayout.PADDING, y, paint);
+            canvas.drawLine(x, y - ROW_HEIGHT + 10, x, y + 10, linePaint);
+        }
+
+        canvas.drawLine(layout.right, y - ROW_HEIGHT + 10, layout.right, y + 10, linePaint);
+        canvas.drawLine(layout.left, y + 10, layout.right, y + 10, linePaint);
+        return y + ROW_HEIGHT;
+    }
+
+    // One line on the baseline, or two lines ending on it
+    private static void drawLines(Canvas canvas, String[] lines, float x, float baseline, Paint paint) {
+        float lineY = baseline - (lines.length - 1) * paint.getFontSpacing();
+        for (String line : lines) {
+            canvas.drawText(line, x, lineY, paint);
+            lineY += paint.getFontSpacing();
+        }
+    }
+}
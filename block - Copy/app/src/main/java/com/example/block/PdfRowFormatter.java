@@ -0,0 +1,91 @@
+package com.example.block;
+
+import android.graphics.Paint;
+
+import com.example.billing.FixedPoint;
+
+// Turns readings into the lines of PdfExporter's table cells, fitted to the columns of a
+// PdfTableLayout. Runs on PdfExporter's formatting threads; Paint is not thread-safe, so each
+// thread measures with its own copy, and widths come from the shared TextWidthCache.
+final class PdfRowFormatter {
+
+    // One table row ready to draw: one or two lines per cell. Immutable once published to the
+    // writer thread.
+    static final class Cells {
+        final String[][] lines;
+
+        Cells(String[][] lines) {
+            this.lines = lines;
+        }
+    }
+
+    static final int COLUMNS = 8;
+    static final String ELLIPSIS = "…";
+
+    private final ThreadLocal<Paint> paint;
+    private final TextWidthCache cache;
+    private final PdfTableLayout layout;
+
+    PdfRowFormatter(Paint textPaint, TextWidthCache cache, PdfTableLayout layout) {
+        Paint template = new Paint(textPaint);
+        paint = ThreadLocal.withInitial(() -> new Paint(template));
+        this.cache = cache;
+        this.layout = layout;
+    }
+
+    Cells[] format(Reading[] readings, int count) {
+        Paint measure = paint.get();
+        StringBuilder sb = new StringBuilder(32);
+        Cells[] rows = new Cells[count];
+        for (int i = 0; i < count; i++) {
+            rows[i] = format(readings[i], measure, sb);
+        }
+        return rows;
+    }
+
+    private Cells format(Reading reading, Paint measure, StringBuilder sb) {
+        String[] text = new String[COLUMNS];
+        text[0] = reading.houseNumber;
+        text[1] = FixedPoint.formatShort(reading.energyCount, FixedPoint.ENERGY_DECIMALS);
+        text[2] = FixedPoint.formatShort(reading.tarif, FixedPoint.TARIF_DECIMALS);
+
+        // --- VAT on the energy used since the block's previous reading ---
+        sb.setLength(0);
+        FixedPoint.append(sb, reading.vat, FixedPoint.PERCENT_DECIMALS, 1).append('(');
+        FixedPoint.append(sb, reading.vatAmount, FixedPoint.MONEY_DECIMALS, 1).append(')');
+        text[3] = sb.toString();
+
+        text[4] = FixedPoint.formatShort(reading.additionalPayment, FixedPoint.MONEY_DECIMALS);
+        text[5] = FixedPoint.formatShort(reading.finalPayment, FixedPoint.MONEY_DECIMALS);
+        text[6] = reading.date;
+        text[7] = reading.time;
+
+        String[][] lines = new String[COLUMNS][];
+        for (int c = 0; c < COLUMNS; c++) {
+            lines[c] = fit(text[c] == null ? "" : text[c], layout.textWidth(c), measure, cache);
+        }
+        return new Cells(lines);
+    }
+
+    // `text` as one line if it fits in `available`, else wrapped onto a second line (at a space
+    // when there is one), cut with an ellipsis if that still does not fit
+    static String[] fit(String text, float available, Paint measure, TextWidthCache cache) {
+        if (cache.width(text, measure) <= available) {
+            return new String[]{text};
+        }
+        int end = measure.breakText(text, true, available, null);
+        int space = text.lastIndexOf(' ', end);
+        if (space > 0 && end < text.length()) end = space;
+        String first = text.substring(0, Math.max(end, 1)).trim();
+        String rest = text.substring(Math.max(end, 1)).trim();
+        if (rest.isEmpty()) {
+            return new String[]{first};
+        }
+        if (cache.width(rest, measure) > available) {
+            float room = available - cache.width(ELLIPSIS, measure);
+            int keep = room > 0 ? measure.breakText(rest, true, room, null) : 0;
+            rest = rest.substring(0, keep) + ELLIPSIS;
+        }
+        return new String[]{first, rest};
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.block;
+
+import android.database.Cursor;
+import android.graphics.Paint;
+
+import com.example.billing.FixedPoint;
+
+// Column geometry of the PDF table, computed from the data in one pass over the cursor before the
+// first page is drawn. Each column gets the width of its widest cell or header plus padding. If the
+// table is narrower than the page the spare width is shared out evenly. If it is wider, narrow
+// columns keep their width and the wide ones share what is left, and cells that still do not fit
+// are wrapped or cut by PdfRowFormatter.fit.
+final class PdfTableLayout {
+
+    static final float PADDING = 5f;
+    private static final float MIN_COLUMN = 30f;
+
+    final float[] x;      // left edge of each column
+    final float[] widths; // including PADDING on both sides
+    final float left;
+    final float right;
+
+    private PdfTableLayout(float left, float[] widths) {
+        this.left = left;
+        this.widths = widths;
+        x = new float[widths.length];
+        float pos = left;
+        for (int i = 0; i < widths.length; i++) {
+            x[i] = pos;
+            pos += widths[i];
+        }
+        right = pos;
+    }
+
+    // Width left for text in column c
+    float textWidth(int c) {
+        return widths[c] - 2 * PADDING;
+    }
+
+    // Reads the cursor to its end and moves it back before the first row
+    static PdfTableLayout measure(Cursor cursor, String[] headers, Paint headerPaint,
+                                  Paint textPaint, TextWidthCache cache, float left, float available) {
+        float[] need = new float[PdfRowFormatter.COLUMNS];
+        NumberColumn energy = new NumberColumn(FixedPoint.ENERGY_DECIMALS);
+        NumberColumn tarif = new NumberColumn(FixedPoint.TARIF_DECIMALS);
+        NumberColumn vat = new NumberColumn(FixedPoint.PERCENT_DECIMALS);
+        NumberColumn vatAmount = new NumberColumn(FixedPoint.MONEY_DECIMALS);
+        NumberColumn additional = new NumberColumn(FixedPoint.MONEY_DECIMALS);
+        NumberColumn total = new NumberColumn(FixedPoint.MONEY_DECIMALS);
+
+        // Amounts are compared as numbers and only the widest is measured; the few distinct
+        // house numbers, dates and times are measured through the cache
+        DatabaseHelper.RowReader reader = new DatabaseHelper.RowReader(cursor);
+        cursor.moveToPosition(-1);
+        while (cursor.moveToNext()) {
+            Reading r = reader.read();
+            need[0] = Math.max(need[0], widthOf(r.houseNumber, textPaint, cache));
+            energy.add(r.energyCount);
+            tarif.add(r.tarif);
+            vat.add(r.vat);
+            vatAmount.add(r.vatAmount);
+            additional.add(r.additionalPayment);
+            total.add(r.finalPayment);
+            need[6] = Math.max(need[6], widthOf(r.date, textPaint, cache));
+            need[7] = Math.max(need[7], widthOf(r.time, textPaint, cache));
+        }
+        cursor.moveToPosition(-1);
+
+        need[1] = textPaint.measureText(energy.widest());
+        need[2] = textPaint.measureText(tarif.widest());
+        need[3] = textPaint.measureText(vat.widest() + "(" + vatAmount.widest() + ")");
+        need[4] = textPaint.measureText(additional.widest());
+        need[5] = textPaint.measureText(total.widest());
+
+        for (int c = 0; c < need.length; c++) {
+            need[c] = Math.max(need[c], headerPaint.measureText(headers[c].trim()));
+            need[c] = Math.max(need[c] + 2 * PADDING, MIN_COLUMN);
+        }
+        return new PdfTableLayout(left, fit(need, available));
+    }
+
+    // Widths for columns wanting `need` in `available`
+    static float[] fit(float[] need, float available) {
+        float[] widths = new float[need.length];
+        float sum = 0;
+        for (float n : need) sum += n;
+
+        if (sum <= available) {
+            float spare = (available - sum) / need.length;
+            for (int c = 0; c < need.length; c++) widths[c] = need[c] + spare;
+            return widths;
+        }
+
+        // Columns needing less than an even share of what is left keep their width, narrowest first
+        boolean[] done = new boolean[need.length];
+        float remaining = available;
+        int open = need.length;
+        boolean settled = false;
+        while (!settled && open > 0) {
+            settled = true;
+            float share = remaining / open;
+            for (int c = 0; c < need.length; c++) {
+                if (!done[c] && need[c] <= share) {
+                    widths[c] = need[c];
+                    done[c] = true;
+                    remaining -= need[c];
+                    open--;
+                    settled = false;
+                }
+            }
+        }
+        for (int c = 0; c < need.length; c++) {
+            if (!done[c]) widths[c] = remaining / open;
+        }
+        return widths;
+    }
+
+    private static float widthOf(String text, Paint measure, TextWidthCache cache) {
+        return text == null ? 0 : cache.width(text, measure);
+    }
+
+    // Tracks the longest integer part and fraction of a column's amounts as formatShort prints them
+    private static final class NumberColumn {
+        private final int decimals;
+        private long maxInteger;
+        private int fractionDigits;
+        private boolean negative;
+
+        NumberColumn(int decimals) {
+            this.decimals = decimals;
+            fractionDigits = Math.min(1, decimals);
+        }
+
+        void add(long value) {
+            if (value < 0) {
+                negative = true;
+                value = -value;
+            }
+            long scale = FixedPoint.scale(decimals);
+            maxInteger = Math.max(maxInteger, value / scale);
+            long fraction = value % scale;
+            int digits = decimals;
+            while (digits > fractionDigits && fraction % 10 == 0) {
+                fraction /= 10;
+                digits--;
+            }
+            fractionDigits = digits;
+        }
+
+        // A string as wide as the widest value (digits have the same advance)
+        String widest() {
+            StringBuilder sb = new StringBuilder(24);
+            if (negative) sb.append('-');
+            sb.append(maxInteger);
+            if (fractionDigits > 0) {
+                sb.append('.');
+                for (int i = 0; i < fractionDigits; i++) sb.append('0');
+            }
+            return sb.toString();
+        }
+    }
+}
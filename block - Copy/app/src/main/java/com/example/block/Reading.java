@@ -0,0 +1,49 @@
+package com.example.block;
+
+// One stored meter reading. Amounts are fixed-point longs, see FixedPoint for the scales.
+public class Reading {
+
+    public final long id;
+    public final String houseNumber;
+    public final long energyCount;       // 0.001 kWh
+    public final long vat;               // 0.01 %
+    public final long additionalPayment; // santim
+    public final long finalPayment;      // santim
+    public final long tarif;             // 0.0001 Birr per kWh
+    public final String date;
+    public final String time;
+    public final long readAt;
+
+    // Billed against the previous reading of the same block
+    public final long usedCount;  // 0.001 kWh
+    public final long baseCharge; // santim
+    public final long vatAmount;  // santim
+
+    public Reading(long id,
+                   String houseNumber,
+                   long energyCount,
+                   long vat,
+                   long additionalPayment,
+                   long finalPayment,
+                   long tarif,
+                   String date,
+                   String time,
+                   long readAt,
+                   long usedCount,
+                   long baseCharge,
+                   long vatAmount) {
+        this.id = id;
+        this.houseNumber = houseNumber;
+        this.energyCount = energyCount;
+        this.vat = vat;
+        this.additionalPayment = additionalPayment;
+        this.finalPayment = finalPayment;
+        this.tarif = tarif;
+        this.date = date;
+        this.time = time;
+        this.readAt = readAt;
+        this.usedCount = usedCount;
+        this.baseCharge = baseCharge;
+        this.vatAmount = vatAmount;
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.block;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.example.billing.EthiopianDateConverter;
+import com.example.billing.FixedPoint;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+// Recycled rows for a block's history, newest first, grown one page at a time
+public class ReadingAdapter extends RecyclerView.Adapter<ReadingAdapter.ViewHolder> {
+
+    public interface OnDeleteListener {
+        void onDelete(Reading reading);
+    }
+
+    private final List<Reading> readings = new ArrayList<>();
+    private final OnDeleteListener deleteListener;
+
+    private final SimpleDateFormat sdf24 = new SimpleDateFormat("HH:mm", Locale.getDefault());
+    private final SimpleDateFormat sdf12 = new SimpleDateFormat("hh:mm a", Locale.getDefault());
+    private final TimeZone timeZone = TimeZone.getDefault();
+
+    public ReadingAdapter(OnDeleteListener deleteListener) {
+        this.deleteListener = deleteListener;
+    }
+
+    public void appendPage(List<Reading> page) {
+        int start = readings.size();
+        readings.addAll(page);
+        notifyItemRangeInserted(start, page.size());
+    }
+
+    // Oldest reading loaded so far; the next page starts after it
+    public Reading getLast() {
+        return readings.isEmpty() ? null : readings.get(readings.size() - 1);
+    }
+
+    public int indexOf(long id) {
+        for (int i = 0; i < readings.size(); i++) {
+            if (readings.get(i).id == id) return i;
+        }
+        return RecyclerView.NO_POSITION;
+    }
+
+    public Reading get(int position) {
+        return readings.get(position);
+    }
+
+    public void remove(int position) {
+        readings.remove(position);
+        notifyItemRemoved(position);
+    }
+
+    public void replace(int position, Reading reading) {
+        readings.set(position, reading);
+        notifyItemChanged(position);
+    }
+
+    @Override
+    public int getItemCount() {
+        return readings.size();
+    }
+
+    @NonNull
+    @Override
+    public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.item_reading, parent, false);
+        return new ViewHolder(view);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
+        Reading reading = readings.get(position);
+
+        StringBuilder text = new StringBuilder(160);
+        text.append("የቤት ቁጥር: ").append(reading.houseNumber);
+        FixedPoint.append(text.append("\nየሀይል መጠን: "), reading.energyCount, FixedPoint.ENERGY_DECIMALS, 1);
+        FixedPoint.append(text.append("\nታሪፍ: "), reading.tarif, FixedPoint.TARIF_DECIMALS, 1);
+        FixedPoint.append(text.append("\nቫት: "), reading.vat, FixedPoint.PERCENT_DECIMALS, 1);
+        FixedPoint.append(text.append('('), reading.vatAmount, FixedPoint.MONEY_DECIMALS, 2).append(')');
+        FixedPoint.append(text.append("\nወርሃዊ መዋጮ: "), reading.additionalPayment, FixedPoint.MONEY_DECIMALS, 1);
+        FixedPoint.append(text.append("\nጠቅላላ ክፍያ: "), reading.finalPayment, FixedPoint.MONEY_DECIMALS, 1);
+        text.append("\nቀን: ").append(reading.date).append(" (");
+        EthiopianDateConverter.append(text, EthiopianDateConverter.fromEpochMillis(reading.readAt, timeZone))
+                .append(" ዓ.ም)");
+        text.append("\nሰአት: ").append(formatTo12Hour(reading.time));
+        holder.text.setText(text);
+
+        holder.deleteIcon.setOnClickListener(v -> deleteListener.onDelete(reading));
+    }
+
+    // Helper: convert 24-hour time to 12-hour time
+    private String formatTo12Hour(String time24) {
+        try {
+            Date date = sdf24.parse(time24);
+            if (date != null) {
+                return sdf12.format(date);
+            }
+        } catch (ParseException e) {
+            e.printStackTrace();
+        }
+        return time24; // fallback
+    }
+
+    static class ViewHolder extends RecyclerView.ViewHolder {
+        final TextView text;
+        final ImageView deleteIcon;
+
+        ViewHolder(View itemView) {
+            super(itemView);
+            text = itemView.findViewById(R.id.readingText);
+            deleteIcon = itemView.findViewById(R.id.deleteIcon);
+        }
+    }
+}
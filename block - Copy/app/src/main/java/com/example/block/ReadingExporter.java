@@ -0,0 +1,26 @@
+package com.example.block;
+
+import android.database.Cursor;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+// An export of the readings of a cursor to files, run on a background thread and cancellable
+// from any other
+public interface ReadingExporter {
+
+    interface ProgressListener {
+        // Called on the export thread; pagesWritten stays 0 for formats without pages
+        void onProgress(int rowsWritten, int totalRows, int pagesWritten);
+    }
+
+    // Returns the files written, empty when the cursor has no rows. The caller owns the cursor.
+    // Throws CancellationException (after deleting partial output) when cancel() was called.
+    List<File> export(Cursor cursor, ProgressListener listener) throws IOException;
+
+    // Safe to call from any thread; the export stops before its next row
+    void cancel();
+
+    boolean isCancelled();
+}
@@ -0,0 +1,233 @@
+package com.example.block;
+
+import com.example.billing.EthiopianDateConverter;
+import com.example.billing.FixedPoint;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TimeZone;
+
+// Imports meter readings from CSV, one reading per line:
+//
+//   house_number,energy_count,tarif,vat,additional_payment,date,time
+//   355/01,1234.5,2.5,15,50,2024-01-01,09:30:00
+//
+// in the units typed into MainActivity (kWh, Birr/kWh, %, Birr), the date as yyyy-MM-dd and the
+// time as HH:mm or HH:mm:ss (empty or left out for midnight). A first line that does not start with a
+// digit is taken as a header. Fields may be quoted. The file is read line by line and written in
+// transactions of CHUNK_SIZE readings, billed through DatabaseHelper.insertReadings. Lines that
+// fail validation are skipped and reported with their line number.
+public class ReadingImporter {
+
+    static final int CHUNK_SIZE = 500;
+    static final int COLUMNS = 7;
+
+    // Only the first errors are kept; the rest are counted
+    static final int MAX_REPORTED_ERRORS = 200;
+
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+
+    // Readings outside this range are typos; it also keeps dates inside EthiopianDateConverter's table
+    private static final int MIN_YEAR = 1900;
+    private static final int MAX_YEAR = 2200;
+
+    public static final class LineError {
+        public final int line;
+        public final int message; // string resource
+
+        LineError(int line, int message) {
+            this.line = line;
+            this.message = message;
+        }
+    }
+
+    public static final class Result {
+        public int imported;
+        public int rejected;
+        public final List<LineError> errors = new ArrayList<>();
+    }
+
+    private final DatabaseHelper dbHelper;
+    private final TimeZone zone;
+
+    private final DatabaseHelper.NewReading[] chunk = new DatabaseHelper.NewReading[CHUNK_SIZE];
+    private final String[] fields = new String[COLUMNS];
+    private final StringBuilder field = new StringBuilder();
+
+    public ReadingImporter(DatabaseHelper dbHelper) {
+        this(dbHelper, TimeZone.getDefault());
+    }
+
+    ReadingImporter(DatabaseHelper dbHelper, TimeZone zone) {
+        this.dbHelper = dbHelper;
+        this.zone = zone;
+        for (int i = 0; i < CHUNK_SIZE; i++) {
+            chunk[i] = new DatabaseHelper.NewReading();
+        }
+    }
+
+    public Result importCsv(Reader in) throws IOException {
+        Result result = new Result();
+        BufferedReader reader = in instanceof BufferedReader ? (BufferedReader) in : new BufferedReader(in, 64 * 1024);
+        int lineNumber = 0;
+        int pending = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (lineNumber == 1 && !line.isEmpty() && line.charAt(0) == '\uFEFF') {
+                line = line.substring(1);
+            }
+            if (line.trim().isEmpty()) continue;
+            if (lineNumber == 1 && !Character.isDigit(firstChar(line))) continue;
+
+            int error = parse(line, chunk[pending]);
+            if (error != 0) {
+                result.rejected++;
+                if (result.errors.size() < MAX_REPORTED_ERRORS) {
+                    result.errors.add(new LineError(lineNumber, error));
+                }
+                continue;
+            }
+            if (++pending == CHUNK_SIZE) {
+                dbHelper.insertReadings(chunk, pending);
+                result.imported += pending;
+                pending = 0;
+            }
+        }
+        if (pending > 0) {
+            dbHelper.insertReadings(chunk, pending);
+            result.imported += pending;
+        }
+        return result;
+    }
+
+    // Fill `out` from one line; returns a string resource describing the problem, or 0
+    int parse(String line, DatabaseHelper.NewReading out) {
+        int found = split(line);
+        if (found == COLUMNS - 1) {
+            fields[COLUMNS - 1] = "";
+        } else if (found != COLUMNS) {
+            return R.string.invalid_columns;
+        }
+        String block = fields[0];
+        int blockError = Blocks.validationError(block);
+        if (blockError != 0) {
+            return blockError;
+        }
+        for (int i = 1; i < 6; i++) {
+            if (fields[i].isEmpty()) return R.string.required;
+        }
+
+        try {
+            out.energyCount = FixedPoint.parse(fields[1], FixedPoint.ENERGY_DECIMALS);
+            out.tarif = FixedPoint.parse(fields[2], FixedPoint.TARIF_DECIMALS);
+            out.vat = FixedPoint.parse(fields[3], FixedPoint.PERCENT_DECIMALS);
+            out.additionalPayment = FixedPoint.parse(fields[4], FixedPoint.MONEY_DECIMALS);
+        } catch (NumberFormatException | ArithmeticException e) {
+            return R.string.invalid_number_format;
+        }
+
+        long epochDay = parseDate(fields[5]);
+        int secondOfDay = fields[6].isEmpty() ? 0 : parseTime(fields[6]);
+        if (epochDay == Long.MIN_VALUE || secondOfDay < 0) {
+            return R.string.invalid_date;
+        }
+        long local = epochDay * MILLIS_PER_DAY + secondOfDay * 1000L;
+
+        out.houseNumber = Blocks.canonical(block);
+        out.date = fields[5];
+        out.time = fields[6].isEmpty() ? "00:00:00" : fields[6].length() == 5 ? fields[6] + ":00" : fields[6];
+        out.readAt = local - zone.getOffset(local - zone.getRawOffset());
+        return 0;
+    }
+
+    // Split a CSV line into `fields`, unquoting quoted fields; returns the number of fields found
+    private int split(String line) {
+        int count = 0;
+        int i = 0;
+        int length = line.length();
+        while (true) {
+            field.setLength(0);
+            if (i < length && line.charAt(i) == '"') {
+                i++;
+                while (i < length) {
+                    char c = line.charAt(i++);
+                    if (c == '"') {
+                        if (i < length && line.charAt(i) == '"') {
+                            field.append('"');
+                            i++;
+                        } else {
+                            break;
+                        }
+                    } else {
+                        field.append(c);
+                    }
+                }
+                while (i < length && line.charAt(i) != ',') i++;
+            } else {
+                while (i < length && line.charAt(i) != ',') field.append(line.charAt(i++));
+            }
+            if (count < COLUMNS) {
+                fields[count] = field.toString().trim();
+            }
+            count++;
+            if (i >= length) return count;
+            i++; // the comma
+        }
+    }
+
+    private static char firstChar(String line) {
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c != '"' && !Character.isWhitespace(c)) return c;
+        }
+        return ' ';
+    }
+
+    // yyyy-MM-dd as an epoch day, Long.MIN_VALUE if malformed
+    static long parseDate(String s) {
+        if (s.length() != 10 || s.charAt(4) != '-' || s.charAt(7) != '-') return Long.MIN_VALUE;
+        int year = digits(s, 0, 4);
+        int month = digits(s, 5, 2);
+        int day = digits(s, 8, 2);
+        if (year < MIN_YEAR || year > MAX_YEAR || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)) {
+            return Long.MIN_VALUE;
+        }
+        return EthiopianDateConverter.gregorianToEpochDay(year, month, day);
+    }
+
+    // HH:mm or HH:mm:ss as seconds of the day, -1 if malformed
+    static int parseTime(String s) {
+        if ((s.length() != 5 && s.length() != 8) || s.charAt(2) != ':') return -1;
+        int hour = digits(s, 0, 2);
+        int minute = digits(s, 3, 2);
+        int second = 0;
+        if (s.length() == 8) {
+            if (s.charAt(5) != ':') return -1;
+            second = digits(s, 6, 2);
+        }
+        if (hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) return -1;
+        return hour * 3600 + minute * 60 + second;
+    }
+
+    private static int digits(String s, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            int d = s.charAt(i) - '0';
+            if (d < 0 || d > 9) return -1;
+            value = value * 10 + d;
+        }
+        return value;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        if (month == 2) {
+            boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+            return leap ? 29 : 28;
+        }
+        return month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31;
+    }
+}
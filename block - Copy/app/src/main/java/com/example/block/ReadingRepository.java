@@ -0,0 +1,183 @@
+package com.example.block;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Runs DatabaseHelper work off the UI thread. Reads share a small fixed pool, writes go through
+// a single thread so they are applied in submission order, and results come back on the main thread.
+// Single-reading inserts and deletes are group committed by a WriteCoalescer on that thread.
+public class ReadingRepository {
+
+    private static final String TAG = "ReadingRepository";
+    private static final int READ_THREADS = 2;
+
+    public interface Callback<T> {
+        void onResult(T result);
+
+        default void onError(Exception e) {
+            Log.e(TAG, "Database task failed", e);
+        }
+    }
+
+    private static volatile ReadingRepository instance;
+
+    private final DatabaseHelper dbHelper;
+    private final ExecutorService readExecutor;
+    private final ExecutorService writeExecutor;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final WriteCoalescer coalescer;
+
+    public static ReadingRepository getInstance(Context context) {
+        if (instance == null) {
+            synchronized (ReadingRepository.class) {
+                if (instance == null) {
+                    instance = new ReadingRepository(DatabaseHelper.getInstance(context));
+                }
+            }
+        }
+        return instance;
+    }
+
+    ReadingRepository(DatabaseHelper dbHelper) {
+        this.dbHelper = dbHelper;
+        this.readExecutor = Executors.newFixedThreadPool(READ_THREADS, namedThreads("db-read"));
+        this.writeExecutor = Executors.newSingleThreadExecutor(namedThreads("db-write"));
+        this.coalescer = new WriteCoalescer(dbHelper, writeExecutor, mainHandler::post);
+    }
+
+    public DatabaseHelper getDatabaseHelper() {
+        return dbHelper;
+    }
+
+    // Open the database ahead of the first submit: finishes pending back-fills and warms the
+    // latest-reading cache on the writer thread
+    public Future<Void> warmUp() {
+        return write(() -> {
+            dbHelper.getWritableDatabase();
+            return null;
+        }, null);
+    }
+
+    // Insert a reading (fixed-point amounts, see FixedPoint); the callback receives the final
+    // payment billed for it, in santim, once the reading is committed
+    public Future<Long> insertReading(String houseNumber,
+                                      long energyCount,
+                                      long vat,
+                                      long additionalPayment,
+                                      long tarif,
+                                      String date,
+                                      String time,
+                                      long readAt,
+                                      Callback<Long> callback) {
+        DatabaseHelper.NewReading reading = new DatabaseHelper.NewReading();
+        reading.houseNumber = houseNumber;
+        reading.energyCount = energyCount;
+        reading.vat = vat;
+        reading.additionalPayment = additionalPayment;
+        reading.tarif = tarif;
+        reading.date = date;
+        reading.time = time;
+        reading.readAt = readAt;
+        return coalescer.insert(reading, callback);
+    }
+
+    // Import a CSV file of readings (see ReadingImporter) on the writer thread; closes the stream
+    public Future<ReadingImporter.Result> importCsv(InputStream in, Callback<ReadingImporter.Result> callback) {
+        return write(() -> {
+            try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+                return new ReadingImporter(dbHelper).importCsv(reader);
+            }
+        }, callback);
+    }
+
+    public Future<Boolean> deleteReading(long id, Callback<Boolean> callback) {
+        return coalescer.delete(id, callback);
+    }
+
+    public Future<List<Reading>> getReadings(String houseNumber, long fromMillis, long toMillis,
+                                             Callback<List<Reading>> callback) {
+        return read(() -> dbHelper.getReadings(houseNumber, fromMillis, toMillis), callback);
+    }
+
+    public Future<List<Reading>> getReadingsPage(String houseNumber, long beforeReadAt, long beforeId, int limit,
+                                                 Callback<List<Reading>> callback) {
+        return read(() -> dbHelper.getReadingsPage(houseNumber, beforeReadAt, beforeId, limit), callback);
+    }
+
+    // period is an Ethiopian year * 100 + month, see DatabaseHelper.ethiopianPeriod
+    public Future<List<Reading>> getReadingsInPeriod(int period, Callback<List<Reading>> callback) {
+        return read(() -> dbHelper.getReadingsInPeriod(period), callback);
+    }
+
+    public Future<List<BlockTotal>> getBlockTotals(int period, Callback<List<BlockTotal>> callback) {
+        return read(() -> dbHelper.getBlockTotals(period), callback);
+    }
+
+    public Future<List<BlockTotal>> getYearTotals(int ethiopianYear, Callback<List<BlockTotal>> callback) {
+        return read(() -> dbHelper.getYearTotals(ethiopianYear), callback);
+    }
+
+    public Future<List<BlockTotal>> getBlockHistory(String houseNumber, int fromPeriod, int toPeriod,
+                                                    Callback<List<BlockTotal>> callback) {
+        return read(() -> dbHelper.getBlockHistory(houseNumber, fromPeriod, toPeriod), callback);
+    }
+
+    public Future<Void> rebuildBlockTotals(Callback<Void> callback) {
+        return write(() -> {
+            dbHelper.rebuildBlockTotals();
+            return null;
+        }, callback);
+    }
+
+    public Future<Reading> getReading(long id, Callback<Reading> callback) {
+        return read(() -> dbHelper.getReading(id), callback);
+    }
+
+    // Run any read-only work (queries, exports) on the read pool
+    public <T> Future<T> read(Callable<T> work, Callback<T> callback) {
+        return readExecutor.submit(deliver(work, callback));
+    }
+
+    // Run work that modifies the database on the single writer thread
+    public <T> Future<T> write(Callable<T> work, Callback<T> callback) {
+        return writeExecutor.submit(deliver(work, callback));
+    }
+
+    private <T> Callable<T> deliver(Callable<T> work, Callback<T> callback) {
+        return () -> {
+            try {
+                T result = work.call();
+                if (callback != null) {
+                    mainHandler.post(() -> callback.onResult(result));
+                }
+                return result;
+            } catch (Exception e) {
+                if (callback != null) {
+                    mainHandler.post(() -> callback.onError(e));
+                } else {
+                    Log.e(TAG, "Database task failed", e);
+                }
+                throw e;
+            }
+        };
+    }
+
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> new Thread(runnable, prefix + "-" + count.incrementAndGet());
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.block;
+
+import android.graphics.Paint;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Drawn widths of strings for one text style, each distinct string measured (shaped) once. House
+// numbers, dates, times and most amounts repeat on every page of an export, so after the first
+// rows nearly every lookup is a hit. Shared by PdfExporter's formatting threads; misses are
+// measured with the caller's own Paint, which must have the cache's text style. Entries stop being
+// added at MAX_ENTRIES so a column of unique values cannot grow it without limit.
+final class TextWidthCache {
+
+    static final int MAX_ENTRIES = 8192;
+
+    private final ConcurrentHashMap<String, Float> widths = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    float width(String text, Paint measure) {
+        Float cached = widths.get(text);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached;
+        }
+        misses.incrementAndGet();
+        float width = measure.measureText(text);
+        if (widths.size() < MAX_ENTRIES) {
+            widths.put(text, width);
+        }
+        return width;
+    }
+
+    long hits() {
+        return hits.get();
+    }
+
+    long misses() {
+        return misses.get();
+    }
+}
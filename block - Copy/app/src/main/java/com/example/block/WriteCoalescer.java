@@ -0,0 +1,155 @@
+package com.example.block;
+
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+// Group commit for single-reading inserts and deletes. Submits queue up here; one drain task on
+// the writer thread waits up to WINDOW_MILLIS for the group to fill, then applies everything queued
+// (at most MAX_GROUP) in one transaction through DatabaseHelper.applyWrites. A burst of submits
+// during a billing round costs one commit per group instead of one per reading. Each submit's
+// future completes, and its callback runs, only once the transaction holding it has committed.
+// Writes keep their submission order among themselves. If a group fails its writes are applied
+// again one by one, so only the write that is at fault reports the error.
+final class WriteCoalescer {
+
+    static final long WINDOW_MILLIS = 4;
+    static final int MAX_GROUP = 256;
+
+    private static final String TAG = "WriteCoalescer";
+
+    private static final class Pending<T> {
+        final DatabaseHelper.Write write = new DatabaseHelper.Write();
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        final ReadingRepository.Callback<T> callback;
+
+        Pending(ReadingRepository.Callback<T> callback) {
+            this.callback = callback;
+        }
+
+        @SuppressWarnings("unchecked")
+        T result() {
+            return (T) (write.reading != null ? (Object) write.reading.finalPayment : (Object) write.deleted);
+        }
+    }
+
+    private final DatabaseHelper dbHelper;
+    private final ExecutorService writer;
+    private final Executor callbackExecutor;
+
+    private final Object lock = new Object();
+    private final ArrayDeque<Pending<?>> queue = new ArrayDeque<>();
+    private boolean drainScheduled;
+
+    WriteCoalescer(DatabaseHelper dbHelper, ExecutorService writer, Executor callbackExecutor) {
+        this.dbHelper = dbHelper;
+        this.writer = writer;
+        this.callbackExecutor = callbackExecutor;
+    }
+
+    // The future and callback receive the final payment billed for the reading, in santim
+    Future<Long> insert(DatabaseHelper.NewReading reading, ReadingRepository.Callback<Long> callback) {
+        Pending<Long> pending = new Pending<>(callback);
+        pending.write.reading = reading;
+        return submit(pending);
+    }
+
+    // The future and callback receive whether a reading was deleted
+    Future<Boolean> delete(long id, ReadingRepository.Callback<Boolean> callback) {
+        Pending<Boolean> pending = new Pending<>(callback);
+        pending.write.deleteId = id;
+        return submit(pending);
+    }
+
+    private <T> Future<T> submit(Pending<T> pending) {
+        synchronized (lock) {
+            queue.add(pending);
+            if (queue.size() >= MAX_GROUP) {
+                lock.notifyAll();
+            }
+            if (!drainScheduled) {
+                drainScheduled = true;
+                writer.execute(this::drain);
+            }
+        }
+        return pending.future;
+    }
+
+    // On the writer thread
+    private void drain() {
+        Pending<?>[] group;
+        synchronized (lock) {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(WINDOW_MILLIS);
+            try {
+                while (queue.size() < MAX_GROUP) {
+                    long waitNanos = deadline - System.nanoTime();
+                    if (waitNanos <= 0) break;
+                    TimeUnit.NANOSECONDS.timedWait(lock, waitNanos);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            group = new Pending<?>[Math.min(queue.size(), MAX_GROUP)];
+            for (int i = 0; i < group.length; i++) {
+                group[i] = queue.poll();
+            }
+            // Whatever arrived past MAX_GROUP goes in the next group, queued behind other writer work
+            if (queue.isEmpty()) {
+                drainScheduled = false;
+            } else {
+                writer.execute(this::drain);
+            }
+        }
+        apply(group);
+    }
+
+    private void apply(Pending<?>[] group) {
+        DatabaseHelper.Write[] writes = new DatabaseHelper.Write[group.length];
+        for (int i = 0; i < group.length; i++) {
+            writes[i] = group[i].write;
+        }
+        try {
+            dbHelper.applyWrites(writes, writes.length);
+        } catch (RuntimeException e) {
+            if (group.length == 1) {
+                fail(group[0], e);
+                return;
+            }
+            Log.w(TAG, "Group of " + group.length + " writes failed, applying them one by one", e);
+            for (Pending<?> pending : group) {
+                try {
+                    dbHelper.applyWrites(new DatabaseHelper.Write[]{pending.write}, 1);
+                    complete(pending);
+                } catch (RuntimeException single) {
+                    fail(pending, single);
+                }
+            }
+            return;
+        }
+        for (Pending<?> pending : group) {
+            complete(pending);
+        }
+    }
+
+    private <T> void complete(Pending<T> pending) {
+        T result = pending.result();
+        pending.future.complete(result);
+        if (pending.callback != null) {
+            callbackExecutor.execute(() -> pending.callback.onResult(result));
+        }
+    }
+
+    private void fail(Pending<?> pending, RuntimeException e) {
+        pending.future.completeExceptionally(e);
+        if (pending.callback != null) {
+            callbackExecutor.execute(() -> pending.callback.onError(e));
+        } else {
+            Log.e(TAG, "Write failed", e);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.block;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Every accepted spelling of a block maps to the one "355/NN" form that readings are stored under.
+ */
+public class BlocksTest {
+
+    @Test
+    public void canonicalPadsTheBlockNumber() {
+        assertEquals("355/07", Blocks.canonical("355/7"));
+        assertEquals("355/07", Blocks.canonical("355/007"));
+        assertEquals("355/66", Blocks.canonical("355/66"));
+        assertNull(Blocks.canonical("355/67"));
+        assertNull(Blocks.canonical("355/+5"));
+        assertNull(Blocks.canonical("356/05"));
+        assertNull(Blocks.canonical(null));
+    }
+
+    @Test
+    public void validationAcceptsWhatCanonicalAccepts() {
+        assertEquals(0, Blocks.validationError("355/7"));
+        assertEquals(R.string.invalid_number_format, Blocks.validationError("355/+5"));
+        assertEquals(R.string.invalid_number_format, Blocks.validationError("355/"));
+        assertEquals(R.string.block_range_error, Blocks.validationError("355/0"));
+        assertEquals(R.string.block_range_error, Blocks.validationError("355/100"));
+        assertEquals(R.string.block_must_start, Blocks.validationError("356/01"));
+        assertEquals(R.string.required, Blocks.validationError(""));
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.billing;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Throughput of single bills and whole billing cycles. Run with ./gradlew :billing:jmh; the gc
+// profiler configured in build.gradle reports gc.alloc.rate.norm, which should stay at 0 B/op.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BillingEngineBenchmark {
+
+    // Twelve monthly readings for each of the 66 blocks
+    private static final int READINGS = 66 * 12;
+
+    private final long[] energy = new long[READINGS];
+    private final long[] previous = new long[READINGS];
+    private final long[] finalPayment = new long[READINGS];
+    private final BillingEngine.Bill bill = new BillingEngine.Bill();
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        for (int i = 0; i < READINGS; i++) {
+            previous[i] = random.nextInt(5_000_000);
+            energy[i] = previous[i] + random.nextInt(400_000);
+        }
+    }
+
+    @Benchmark
+    public long finalPayment() {
+        int i = next++ % READINGS;
+        return BillingEngine.finalPayment(energy[i], previous[i], 25_000, 1500, 5000);
+    }
+
+    @Benchmark
+    public void fullBill(Blackhole blackhole) {
+        int i = next++ % READINGS;
+        blackhole.consume(BillingEngine.bill(energy[i], previous[i], 25_000, 1500, 5000, bill).finalPayment);
+    }
+
+    @Benchmark
+    public long billingCycle() {
+        return BillingEngine.billCycle(energy, previous, READINGS, 25_000, 1500, 5000, finalPayment);
+    }
+
+    @Benchmark
+    public long meterSeries() {
+        return BillingEngine.billSeries(energy, READINGS, 0, 25_000, 1500, 5000, finalPayment);
+    }
+}
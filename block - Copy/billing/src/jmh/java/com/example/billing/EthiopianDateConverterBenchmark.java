@@ -0,0 +1,71 @@
+package com.example.billing;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+// Single and bulk Gregorian -> Ethiopian conversion. Run with ./gradlew :billing:jmh; with the gc
+// profiler gc.alloc.rate.norm should be 0 B/op for every benchmark.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EthiopianDateConverterBenchmark {
+
+    // A year of readings for all 66 blocks, newest first as history and export read them
+    private static final int ROWS = 66 * 365;
+
+    private final long[] readAt = new long[ROWS];
+    private final int[] packed = new int[ROWS];
+    private final TimeZone zone = TimeZone.getTimeZone("Africa/Addis_Ababa");
+    private long[] epochDays;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        long now = 1_700_000_000_000L;
+        for (int i = 0; i < ROWS; i++) {
+            readAt[i] = now - i * (86_400_000L / 66) - random.nextInt(60_000);
+        }
+        epochDays = new long[ROWS];
+        for (int i = 0; i < ROWS; i++) {
+            epochDays[i] = readAt[i] / 86_400_000L;
+        }
+    }
+
+    @Benchmark
+    public int fromEpochDay() {
+        return EthiopianDateConverter.fromEpochDay(epochDays[next++ % ROWS]);
+    }
+
+    @Benchmark
+    public long roundTrip() {
+        return EthiopianDateConverter.toEpochDay(EthiopianDateConverter.fromEpochDay(epochDays[next++ % ROWS]));
+    }
+
+    @Benchmark
+    public int fromGregorian() {
+        int i = next++ % 3650;
+        return EthiopianDateConverter.toEthiopian(2015 + i / 365, i % 12 + 1, i % 28 + 1);
+    }
+
+    @Benchmark
+    public int[] bulkColumn() {
+        EthiopianDateConverter.fromEpochMillis(readAt, ROWS, zone, packed);
+        return packed;
+    }
+}
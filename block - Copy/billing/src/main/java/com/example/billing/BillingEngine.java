@@ -0,0 +1,90 @@
+package com.example.billing;
+
+// The bill for one meter reading: the energy used since the previous reading at the tarif,
+// VAT on that, plus the fixed additional payment. All amounts are FixedPoint longs:
+//   energy 0.001 kWh, tarif 0.0001 Birr/kWh, VAT 0.01 %, money in santim.
+// Nothing here allocates, so it can be run for every row of an import or a billing cycle.
+public final class BillingEngine {
+
+    // Santim per (0.001 kWh x 0.0001 Birr/kWh) product
+    private static final long BASE_DIVISOR =
+            FixedPoint.scale(FixedPoint.ENERGY_DECIMALS + FixedPoint.TARIF_DECIMALS - FixedPoint.MONEY_DECIMALS);
+
+    // VAT is a percentage with PERCENT_DECIMALS
+    private static final long VAT_DIVISOR = 100 * FixedPoint.scale(FixedPoint.PERCENT_DECIMALS);
+
+    // Reusable result of a single bill; fill it with bill() instead of allocating one per reading
+    public static final class Bill {
+        public long usedCount;
+        public long baseCharge;
+        public long vatAmount;
+        public long finalPayment;
+    }
+
+    private BillingEngine() {
+    }
+
+    // Energy used since the previous reading; a meter going backwards counts as no usage
+    public static long usedCount(long energyCount, long previousEnergy) {
+        long used = energyCount - previousEnergy;
+        return used < 0 ? 0 : used;
+    }
+
+    // Santim for usedCount at tarif
+    public static long baseCharge(long usedCount, long tarif) {
+        return FixedPoint.mulDiv(usedCount, tarif, BASE_DIVISOR);
+    }
+
+    // Santim of VAT at vat on baseCharge santim
+    public static long vatAmount(long baseCharge, long vat) {
+        return FixedPoint.mulDiv(baseCharge, vat, VAT_DIVISOR);
+    }
+
+    // Final payment only, in santim
+    public static long finalPayment(long energyCount, long previousEnergy, long tarif, long vat,
+                                    long additionalPayment) {
+        long baseCharge = baseCharge(usedCount(energyCount, previousEnergy), tarif);
+        return baseCharge + vatAmount(baseCharge, vat) + additionalPayment;
+    }
+
+    // Every part of the bill, written into `out`, which is returned
+    public static Bill bill(long energyCount, long previousEnergy, long tarif, long vat, long additionalPayment,
+                            Bill out) {
+        out.usedCount = usedCount(energyCount, previousEnergy);
+        out.baseCharge = baseCharge(out.usedCount, tarif);
+        out.vatAmount = vatAmount(out.baseCharge, vat);
+        out.finalPayment = out.baseCharge + out.vatAmount + additionalPayment;
+        return out;
+    }
+
+    // Bill `count` readings of one cycle at a shared tarif, VAT and additional payment. Reading i is
+    // billed against previousEnergy[i]; its final payment goes to finalPayment[i]. Returns the
+    // cycle total in santim.
+    public static long billCycle(long[] energyCount, long[] previousEnergy, int count,
+                                 long tarif, long vat, long additionalPayment,
+                                 long[] finalPayment) {
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            long payment = finalPayment(energyCount[i], previousEnergy[i], tarif, vat, additionalPayment);
+            finalPayment[i] = payment;
+            total += payment;
+        }
+        return total;
+    }
+
+    // Bill consecutive readings of one meter: reading i is billed against reading i - 1, the first
+    // against `opening`. Returns the total in santim.
+    public static long billSeries(long[] energyCount, int count, long opening,
+                                  long tarif, long vat, long additionalPayment,
+                                  long[] finalPayment) {
+        long total = 0;
+        long previous = opening;
+        for (int i = 0; i < count; i++) {
+            long payment = finalPayment(energyCount[i], previous, tarif, vat, additionalPayment);
+            finalPayment[i] = payment;
+            total += payment;
+            previous = energyCount[i];
+        }
+        return total;
+    }
+}
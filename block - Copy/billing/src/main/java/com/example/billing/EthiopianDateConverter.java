@@ -0,0 +1,181 @@
+package com.example.billing;
+
+import java.util.TimeZone;
+
+// Gregorian <-> Ethiopian calendar conversion without allocation.
+//
+// The Ethiopian year has twelve 30-day months and Pagume (month 13) with 5 days, 6 in the year
+// before a Gregorian leap year (year % 4 == 3). Dates are passed around packed into one int,
+// (year << 9) | (month << 5) | day, or written into a caller-supplied int[3]. Conversions go
+// through the epoch day (days since 1970-01-01) and a table holding the epoch day of
+// 1 Meskerem of every Ethiopian year from MIN_YEAR to MAX_YEAR.
+public final class EthiopianDateConverter {
+
+    public static final int MIN_YEAR = 1800; // 1807-09-10 Gregorian
+    public static final int MAX_YEAR = 2300; // ends 2308-09-10 Gregorian
+
+    public static final int PAGUME = 13;
+
+    // Julian day number of 1 Meskerem 1 (Amete Mihret) and of 1970-01-01
+    private static final long ETHIOPIAN_EPOCH_JDN = 1_724_221L;
+    private static final long UNIX_EPOCH_JDN = 2_440_588L;
+
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+
+    // NEW_YEAR[i] = epoch day of 1 Meskerem of year MIN_YEAR + i; one extra entry closes the last year
+    private static final int[] NEW_YEAR = new int[MAX_YEAR - MIN_YEAR + 2];
+
+    static {
+        for (int i = 0; i < NEW_YEAR.length; i++) {
+            int year = MIN_YEAR + i;
+            NEW_YEAR[i] = (int) (ETHIOPIAN_EPOCH_JDN - UNIX_EPOCH_JDN + 365L * (year - 1) + year / 4);
+        }
+    }
+
+    private EthiopianDateConverter() {
+    }
+
+    // --- Packed dates ---
+
+    public static int pack(int year, int month, int day) {
+        return (year << 9) | (month << 5) | day;
+    }
+
+    public static int year(int packed) {
+        return packed >> 9;
+    }
+
+    public static int month(int packed) {
+        return (packed >> 5) & 0xF;
+    }
+
+    public static int day(int packed) {
+        return packed & 0x1F;
+    }
+
+    // Billing period key of a packed Ethiopian date: year * 100 + month, e.g. 201604 for Tahsas 2016
+    public static int period(int packed) {
+        return year(packed) * 100 + month(packed);
+    }
+
+    public static int periodYear(int period) {
+        return period / 100;
+    }
+
+    public static int periodMonth(int period) {
+        return period % 100;
+    }
+
+    public static boolean isLeapYear(int ethiopianYear) {
+        return ethiopianYear % 4 == 3;
+    }
+
+    public static int daysInMonth(int ethiopianYear, int month) {
+        if (month < PAGUME) return 30;
+        return isLeapYear(ethiopianYear) ? 6 : 5;
+    }
+
+    // --- Ethiopian ---
+
+    // Packed Ethiopian date of an epoch day
+    public static int fromEpochDay(long epochDay) {
+        if (epochDay < NEW_YEAR[0] || epochDay >= NEW_YEAR[NEW_YEAR.length - 1]) {
+            throw new IllegalArgumentException("Epoch day out of range: " + epochDay);
+        }
+        // Estimate the year from the mean year length, then settle it against the table
+        int i = (int) ((epochDay - NEW_YEAR[0]) * 4 / 1461);
+        if (i >= NEW_YEAR.length - 1) i = NEW_YEAR.length - 2;
+        while (NEW_YEAR[i] > epochDay) i--;
+        while (NEW_YEAR[i + 1] <= epochDay) i++;
+
+        int dayOfYear = (int) (epochDay - NEW_YEAR[i]);
+        return pack(MIN_YEAR + i, dayOfYear / 30 + 1, dayOfYear % 30 + 1);
+    }
+
+    public static long toEpochDay(int year, int month, int day) {
+        if (year < MIN_YEAR || year > MAX_YEAR || month < 1 || month > PAGUME
+                || day < 1 || day > daysInMonth(year, month)) {
+            throw new IllegalArgumentException("Invalid Ethiopian date: " + year + "-" + month + "-" + day);
+        }
+        return NEW_YEAR[year - MIN_YEAR] + 30L * (month - 1) + day - 1;
+    }
+
+    public static long toEpochDay(int packedEthiopian) {
+        return toEpochDay(year(packedEthiopian), month(packedEthiopian), day(packedEthiopian));
+    }
+
+    // Packed Ethiopian date of a Gregorian date
+    public static int toEthiopian(int year, int month, int day) {
+        return fromEpochDay(gregorianToEpochDay(year, month, day));
+    }
+
+    // Ethiopian year, month and day written to out[offset .. offset + 2]
+    public static void toEthiopian(int year, int month, int day, int[] out, int offset) {
+        int packed = toEthiopian(year, month, day);
+        out[offset] = year(packed);
+        out[offset + 1] = month(packed);
+        out[offset + 2] = day(packed);
+    }
+
+    // Packed Gregorian date (same layout) of an Ethiopian date
+    public static int toGregorian(int year, int month, int day) {
+        return epochDayToGregorian(toEpochDay(year, month, day));
+    }
+
+    // Packed Ethiopian dates of `count` epoch-millis timestamps, as local dates in `zone`.
+    // Sorted columns repeat days, so the previous row's day is reused when it matches.
+    public static void fromEpochMillis(long[] epochMillis, int count, TimeZone zone, int[] out) {
+        long lastDay = Long.MIN_VALUE;
+        int lastPacked = 0;
+        for (int i = 0; i < count; i++) {
+            long millis = epochMillis[i];
+            long epochDay = Math.floorDiv(millis + zone.getOffset(millis), MILLIS_PER_DAY);
+            if (epochDay != lastDay) {
+                lastPacked = fromEpochDay(epochDay);
+                lastDay = epochDay;
+            }
+            out[i] = lastPacked;
+        }
+    }
+
+    public static int fromEpochMillis(long epochMillis, TimeZone zone) {
+        return fromEpochDay(Math.floorDiv(epochMillis + zone.getOffset(epochMillis), MILLIS_PER_DAY));
+    }
+
+    // --- Gregorian (proleptic), days-from-civil after H. Hinnant ---
+
+    public static long gregorianToEpochDay(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = Math.floorDiv(y, 400);
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146_097L + dayOfEra - 719_468L;
+    }
+
+    public static int epochDayToGregorian(long epochDay) {
+        long z = epochDay + 719_468L;
+        long era = Math.floorDiv(z, 146_097L);
+        int dayOfEra = (int) (z - era * 146_097L);
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36_524 - dayOfEra / 146_096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int mp = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * mp + 2) / 5 + 1;
+        int month = mp < 10 ? mp + 3 : mp - 9;
+        int year = (int) (yearOfEra + era * 400) + (month <= 2 ? 1 : 0);
+        return pack(year, month, day);
+    }
+
+    // --- Formatting ---
+
+    // Append a packed date as yyyy-MM-dd
+    public static StringBuilder append(StringBuilder sb, int packed) {
+        sb.append(year(packed)).append('-');
+        int month = month(packed);
+        if (month < 10) sb.append('0');
+        sb.append(month).append('-');
+        int day = day(packed);
+        if (day < 10) sb.append('0');
+        return sb.append(day);
+    }
+}
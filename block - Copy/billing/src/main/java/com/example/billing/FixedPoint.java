@@ -0,0 +1,125 @@
+package com.example.billing;
+
+// Integer fixed-point amounts. Every stored or billed quantity is a long counting a fixed
+// fraction of its unit, so sums are exact and nothing is rounded twice:
+//   energy  - 0.001 kWh        (ENERGY_DECIMALS)
+//   money   - 1 santim         (MONEY_DECIMALS)
+//   tarif   - 0.0001 Birr/kWh  (TARIF_DECIMALS)
+//   VAT     - 0.01 %           (PERCENT_DECIMALS)
+public final class FixedPoint {
+
+    public static final int ENERGY_DECIMALS = 3;
+    public static final int MONEY_DECIMALS = 2;
+    public static final int TARIF_DECIMALS = 4;
+    public static final int PERCENT_DECIMALS = 2;
+
+    private static final long[] POWERS_OF_TEN = {
+            1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L
+    };
+
+    private FixedPoint() {
+    }
+
+    public static long scale(int decimals) {
+        return POWERS_OF_TEN[decimals];
+    }
+
+    // Parse user input such as "1,234.5" or "-0.125". Digits past `decimals` are rounded half up.
+    public static long parse(String text, int decimals) {
+        if (text == null) throw new NumberFormatException("null");
+        String s = text.trim();
+        int i = 0;
+        boolean negative = false;
+        if (i < s.length() && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+            negative = s.charAt(i) == '-';
+            i++;
+        }
+
+        long whole = 0;
+        long fraction = 0;
+        int fractionDigits = 0;
+        boolean roundUp = false;
+        boolean seenDigit = false;
+        boolean seenPoint = false;
+
+        for (; i < s.length(); i++) {
+            char ch = s.charAt(i);
+            if (ch == ',' && !seenPoint) {
+                continue; // grouping separator
+            }
+            if (ch == '.' && !seenPoint) {
+                seenPoint = true;
+                continue;
+            }
+            if (ch < '0' || ch > '9') {
+                throw new NumberFormatException("Not a number: \"" + text + "\"");
+            }
+            seenDigit = true;
+            int digit = ch - '0';
+            if (!seenPoint) {
+                whole = Math.addExact(Math.multiplyExact(whole, 10), digit);
+            } else if (fractionDigits < decimals) {
+                fraction = fraction * 10 + digit;
+                fractionDigits++;
+            } else if (fractionDigits == decimals) {
+                roundUp = digit >= 5;
+                fractionDigits++; // later digits no longer matter
+            }
+        }
+        if (!seenDigit) {
+            throw new NumberFormatException("Not a number: \"" + text + "\"");
+        }
+
+        for (int d = Math.min(fractionDigits, decimals); d < decimals; d++) {
+            fraction *= 10;
+        }
+        long value = Math.addExact(Math.multiplyExact(whole, scale(decimals)), fraction);
+        if (roundUp) value = Math.addExact(value, 1);
+        return negative ? -value : value;
+    }
+
+    // All `decimals` digits, e.g. format(1250, 2) -> "12.50"
+    public static String format(long value, int decimals) {
+        return append(new StringBuilder(20), value, decimals, decimals).toString();
+    }
+
+    // Trailing zeros dropped but at least one decimal kept, e.g. formatShort(1250, 2) -> "12.5"
+    public static String formatShort(long value, int decimals) {
+        return append(new StringBuilder(20), value, decimals, Math.min(1, decimals)).toString();
+    }
+
+    // Append value with between minDecimals and decimals fraction digits, without boxing or regex
+    public static StringBuilder append(StringBuilder sb, long value, int decimals, int minDecimals) {
+        if (value < 0) {
+            sb.append('-');
+            value = -value;
+        }
+        long scale = scale(decimals);
+        sb.append(value / scale);
+        if (decimals == 0) {
+            return sb;
+        }
+
+        long fraction = value % scale;
+        int digits = decimals;
+        while (digits > minDecimals && fraction % 10 == 0) {
+            fraction /= 10;
+            digits--;
+        }
+        if (digits == 0) {
+            return sb;
+        }
+        sb.append('.');
+        for (long p = scale(digits - 1); p > fraction && p > 1; p /= 10) {
+            sb.append('0');
+        }
+        return sb.append(fraction);
+    }
+
+    // a * b / divisor, rounded half away from zero
+    public static long mulDiv(long a, long b, long divisor) {
+        long product = Math.multiplyExact(a, b);
+        long half = divisor / 2;
+        return product >= 0 ? (product + half) / divisor : -((-product + half) / divisor);
+    }
+}
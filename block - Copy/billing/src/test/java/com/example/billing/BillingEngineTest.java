@@ -0,0 +1,63 @@
+package com.example.billing;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BillingEngineTest {
+
+    @Test
+    public void singleBill() {
+        // 10 kWh at 2.5 Birr/kWh with 15 % VAT and 50 Birr additional: 25.00 + 3.75 + 50.00
+        BillingEngine.Bill bill = BillingEngine.bill(30_000, 20_000, 25_000, 1500, 5000, new BillingEngine.Bill());
+        assertEquals(10_000, bill.usedCount);
+        assertEquals(2500, bill.baseCharge);
+        assertEquals(375, bill.vatAmount);
+        assertEquals(7875, bill.finalPayment);
+        assertEquals(7875, BillingEngine.finalPayment(30_000, 20_000, 25_000, 1500, 5000));
+    }
+
+    @Test
+    public void meterGoingBackwardsBillsNoUsage() {
+        assertEquals(0, BillingEngine.usedCount(5_000, 9_000));
+        assertEquals(5000, BillingEngine.finalPayment(5_000, 9_000, 25_000, 1500, 5000));
+    }
+
+    @Test
+    public void roundsEachStepToTheSantim() {
+        // 5 kWh at 2.5 Birr/kWh = 12.50 Birr, 15 % VAT = 1.875 -> 1.88
+        assertEquals(1250, BillingEngine.baseCharge(5_000, 25_000));
+        assertEquals(188, BillingEngine.vatAmount(1250, 1500));
+    }
+
+    @Test
+    public void sumsAreExact() {
+        // A thousand 0.01 Birr charges (0.1 kWh at 0.1 Birr/kWh) add up to exactly 10 Birr
+        long total = 0;
+        for (int i = 0; i < 1000; i++) {
+            total += BillingEngine.baseCharge(100, 1000);
+        }
+        assertEquals(1000, total);
+    }
+
+    @Test
+    public void cycleAndSeriesMatchSingleBills() {
+        long[] energy = {10_000, 25_000, 25_000, 40_500};
+        long[] previous = {0, 10_000, 25_000, 25_000};
+        long[] cycle = new long[energy.length];
+        long[] series = new long[energy.length];
+
+        long cycleTotal = BillingEngine.billCycle(energy, previous, energy.length, 25_000, 1500, 5000, cycle);
+        long seriesTotal = BillingEngine.billSeries(energy, energy.length, 0, 25_000, 1500, 5000, series);
+
+        long expectedTotal = 0;
+        for (int i = 0; i < energy.length; i++) {
+            long expected = BillingEngine.finalPayment(energy[i], previous[i], 25_000, 1500, 5000);
+            assertEquals(expected, cycle[i]);
+            assertEquals(expected, series[i]);
+            expectedTotal += expected;
+        }
+        assertEquals(expectedTotal, cycleTotal);
+        assertEquals(expectedTotal, seriesTotal);
+    }
+}
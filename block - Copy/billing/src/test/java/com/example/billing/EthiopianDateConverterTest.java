@@ -0,0 +1,109 @@
+package com.example.billing;
+
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+public class EthiopianDateConverterTest {
+
+    private static final TimeZone ADDIS_ABABA = TimeZone.getTimeZone("Africa/Addis_Ababa");
+
+    @Test
+    public void knownDates() {
+        assertDate(2016, 1, 1, EthiopianDateConverter.toEthiopian(2023, 9, 12));
+        assertDate(2016, 4, 22, EthiopianDateConverter.toEthiopian(2024, 1, 1));
+        assertDate(2016, 4, 28, EthiopianDateConverter.toEthiopian(2024, 1, 7));
+        assertDate(2015, 13, 6, EthiopianDateConverter.toEthiopian(2023, 9, 11));
+        assertDate(2017, 1, 1, EthiopianDateConverter.toEthiopian(2024, 9, 11));
+        assertDate(2023, 9, 12, EthiopianDateConverter.toGregorian(2016, 1, 1));
+    }
+
+    @Test
+    public void roundTripsEveryDayOfTheSupportedRange() {
+        long first = EthiopianDateConverter.toEpochDay(EthiopianDateConverter.MIN_YEAR, 1, 1);
+        long last = EthiopianDateConverter.toEpochDay(EthiopianDateConverter.MAX_YEAR, EthiopianDateConverter.PAGUME,
+                EthiopianDateConverter.daysInMonth(EthiopianDateConverter.MAX_YEAR, EthiopianDateConverter.PAGUME));
+
+        int previous = 0;
+        for (long epochDay = first; epochDay <= last; epochDay++) {
+            int ethiopian = EthiopianDateConverter.fromEpochDay(epochDay);
+            assertEquals(epochDay, EthiopianDateConverter.toEpochDay(ethiopian));
+            if (previous != 0) {
+                assertFollows(previous, ethiopian);
+            }
+            previous = ethiopian;
+
+            LocalDate gregorian = LocalDate.ofEpochDay(epochDay);
+            assertEquals(epochDay, EthiopianDateConverter.gregorianToEpochDay(
+                    gregorian.getYear(), gregorian.getMonthValue(), gregorian.getDayOfMonth()));
+            assertDate(gregorian.getYear(), gregorian.getMonthValue(), gregorian.getDayOfMonth(),
+                    EthiopianDateConverter.epochDayToGregorian(epochDay));
+            assertEquals(ethiopian, EthiopianDateConverter.toEthiopian(
+                    gregorian.getYear(), gregorian.getMonthValue(), gregorian.getDayOfMonth()));
+        }
+        assertEquals(EthiopianDateConverter.MAX_YEAR, EthiopianDateConverter.year(previous));
+    }
+
+    @Test
+    public void bulkMatchesSingleConversion() {
+        long start = 1_600_000_000_000L;
+        long[] millis = new long[5000];
+        for (int i = 0; i < millis.length; i++) {
+            millis[i] = start + i * 3_600_000L * 7;
+        }
+        int[] packed = new int[millis.length];
+        EthiopianDateConverter.fromEpochMillis(millis, millis.length, ADDIS_ABABA, packed);
+        for (int i = 0; i < millis.length; i++) {
+            assertEquals(EthiopianDateConverter.fromEpochMillis(millis[i], ADDIS_ABABA), packed[i]);
+        }
+    }
+
+    @Test
+    public void bufferApiAndFormatting() {
+        int[] out = new int[4];
+        EthiopianDateConverter.toEthiopian(2024, 1, 1, out, 1);
+        assertArrayEquals(new int[]{0, 2016, 4, 22}, out);
+        assertEquals("2016-04-22", EthiopianDateConverter.append(new StringBuilder(),
+                EthiopianDateConverter.pack(2016, 4, 22)).toString());
+    }
+
+    @Test
+    public void periodKeys() {
+        int period = EthiopianDateConverter.period(EthiopianDateConverter.toEthiopian(2024, 1, 1));
+        assertEquals(201604, period);
+        assertEquals(2016, EthiopianDateConverter.periodYear(period));
+        assertEquals(4, EthiopianDateConverter.periodMonth(period));
+        // Pagume sorts after Nehase and before the next Meskerem
+        assertEquals(201613, EthiopianDateConverter.period(EthiopianDateConverter.pack(2016, 13, 3)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsPagumeSixInCommonYear() {
+        EthiopianDateConverter.toEpochDay(2016, EthiopianDateConverter.PAGUME, 6);
+    }
+
+    private static void assertFollows(int previous, int next) {
+        int y = EthiopianDateConverter.year(previous);
+        int m = EthiopianDateConverter.month(previous);
+        int d = EthiopianDateConverter.day(previous);
+        if (d < EthiopianDateConverter.daysInMonth(y, m)) {
+            d++;
+        } else if (m < EthiopianDateConverter.PAGUME) {
+            m++;
+            d = 1;
+        } else {
+            y++;
+            m = 1;
+            d = 1;
+        }
+        assertEquals(EthiopianDateConverter.pack(y, m, d), next);
+    }
+
+    private static void assertDate(int year, int month, int day, int packed) {
+        assertEquals(year + "-" + month + "-" + day, EthiopianDateConverter.year(packed) + "-" +
+                EthiopianDateConverter.month(packed) + "-" + EthiopianDateConverter.day(packed));
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.billing;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FixedPointTest {
+
+    @Test
+    public void parseScalesAndRounds() {
+        assertEquals(12_500, FixedPoint.parse("12.5", FixedPoint.ENERGY_DECIMALS));
+        assertEquals(123_450, FixedPoint.parse("1,234.5", FixedPoint.MONEY_DECIMALS));
+        assertEquals(25_000, FixedPoint.parse("2.5", FixedPoint.TARIF_DECIMALS));
+        assertEquals(1500, FixedPoint.parse("15", FixedPoint.PERCENT_DECIMALS));
+        assertEquals(13, FixedPoint.parse("0.125", FixedPoint.MONEY_DECIMALS));
+        assertEquals(12, FixedPoint.parse("0.1249", FixedPoint.MONEY_DECIMALS));
+        assertEquals(-50, FixedPoint.parse("-.5", FixedPoint.MONEY_DECIMALS));
+        assertEquals(700, FixedPoint.parse(" 7. ", FixedPoint.MONEY_DECIMALS));
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void parseRejectsText() {
+        FixedPoint.parse("12a", FixedPoint.MONEY_DECIMALS);
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void parseRejectsEmpty() {
+        FixedPoint.parse(".", FixedPoint.MONEY_DECIMALS);
+    }
+
+    @Test
+    public void formatKeepsRequestedDecimals() {
+        assertEquals("12.50", FixedPoint.format(1250, 2));
+        assertEquals("0.05", FixedPoint.format(5, 2));
+        assertEquals("-3.07", FixedPoint.format(-307, 2));
+        assertEquals("12.5", FixedPoint.formatShort(1250, 2));
+        assertEquals("12.0", FixedPoint.formatShort(1200, 2));
+        assertEquals("0.001", FixedPoint.formatShort(1, 3));
+        assertEquals("2.5", FixedPoint.formatShort(25_000, 4));
+    }
+
+    @Test
+    public void mulDivRoundsHalfAwayFromZero() {
+        assertEquals(3, FixedPoint.mulDiv(5, 1, 2));
+        assertEquals(-3, FixedPoint.mulDiv(-5, 1, 2));
+        assertEquals(2, FixedPoint.mulDiv(7, 1, 4));
+    }
+}
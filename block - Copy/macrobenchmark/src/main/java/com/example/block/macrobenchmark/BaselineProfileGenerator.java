@@ -0,0 +1,41 @@
+package com.example.block.macrobenchmark;
+
+import androidx.benchmark.macro.junit4.BaselineProfileRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import kotlin.Unit;
+
+/**
+ * Records the startup path of both screens as a baseline profile. Needs Android 13+ or a rooted
+ * Android 9+ device. Check the generated BaselineProfileGenerator_generate-baseline-prof.txt from
+ * the test's output directory in as app/src/main/baseline-prof.txt.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BaselineProfileGenerator {
+
+    @Rule
+    public BaselineProfileRule baselineProfileRule = new BaselineProfileRule();
+
+    @Test
+    public void generate() {
+        baselineProfileRule.collect(
+                StartupBenchmark.PACKAGE,
+                15,
+                3,
+                null,
+                true,
+                false,
+                line -> true,
+                scope -> {
+                    scope.pressHome();
+                    scope.startActivityAndWait(StartupBenchmark.intent("MainActivity"));
+                    scope.pressHome();
+                    scope.startActivityAndWait(StartupBenchmark.intent("MainActivity2"));
+                    return Unit.INSTANCE;
+                });
+    }
+}
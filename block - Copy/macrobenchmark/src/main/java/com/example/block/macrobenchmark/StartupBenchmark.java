@@ -0,0 +1,96 @@
+package com.example.block.macrobenchmark;
+
+import android.content.Intent;
+
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.StartupMode;
+import androidx.benchmark.macro.StartupTimingMetric;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import kotlin.Unit;
+
+/**
+ * Time to initial display of MainActivity and MainActivity2, cold and warm, on :app's benchmark
+ * build. Each case runs without ahead-of-time compilation (a JIT-cold first launch) and fully
+ * compiled, the most a baseline profile could win back. No profile is checked in yet; once
+ * BaselineProfileGenerator's output is, add a CompilationMode.Partial(BaselineProfileMode.Require)
+ * case to measure it.
+ *
+ * MainActivity only starts on the device its ANDROID_ID check allows; elsewhere it finishes at
+ * once and its cases time out.
+ */
+@RunWith(Parameterized.class)
+public class StartupBenchmark {
+
+    static final String PACKAGE = "com.example.block";
+    private static final int ITERATIONS = 10;
+
+    @Parameterized.Parameters(name = "{0}")
+    public static List<Object[]> compilationModes() {
+        return Arrays.asList(
+                new Object[]{"none", new CompilationMode.None()},
+                new Object[]{"full", new CompilationMode.Full()});
+    }
+
+    @Rule
+    public MacrobenchmarkRule benchmarkRule = new MacrobenchmarkRule();
+
+    private final CompilationMode compilationMode;
+
+    public StartupBenchmark(String name, CompilationMode compilationMode) {
+        this.compilationMode = compilationMode;
+    }
+
+    @Test
+    public void mainActivityCold() {
+        startup("MainActivity", StartupMode.COLD);
+    }
+
+    @Test
+    public void mainActivityWarm() {
+        startup("MainActivity", StartupMode.WARM);
+    }
+
+    @Test
+    public void historyCold() {
+        startup("MainActivity2", StartupMode.COLD);
+    }
+
+    @Test
+    public void historyWarm() {
+        startup("MainActivity2", StartupMode.WARM);
+    }
+
+    private void startup(String activity, StartupMode mode) {
+        benchmarkRule.measureRepeated(
+                PACKAGE,
+                Collections.singletonList(new StartupTimingMetric()),
+                compilationMode,
+                mode,
+                ITERATIONS,
+                scope -> {
+                    scope.pressHome();
+                    return Unit.INSTANCE;
+                },
+                scope -> {
+                    scope.startActivityAndWait(intent(activity));
+                    return Unit.INSTANCE;
+                });
+    }
+
+    static Intent intent(String activity) {
+        Intent intent = new Intent();
+        intent.setClassName(PACKAGE, PACKAGE + "." + activity);
+        intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+        return intent;
+    }
+}